@@ -0,0 +1,565 @@
+package org.ahrsz;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A directed graph with the semantics of HashMapGraph, whose adjacency representation adapts to the degree
+ * of every node.
+ *
+ * Nodes are interned to dense int ids. The neighbours of a node in each direction are kept in a pair of primitive
+ * arrays, ids and weights, which start with room for two neighbours and are scanned linearly. Most nodes have only
+ * a few neighbours, so they cost a few dozen bytes instead of a HashMap each. Once the degree of a node exceeds
+ * the promotion degree, the node gets a hashed representation: an open addressing table from neighbour id to the
+ * slot in the arrays. The arrays stay dense, so scanning the neighbours of a hub is as cheap as before, and only
+ * lookups of single edges use the table. A hub whose degree falls below half the promotion degree drops its table.
+ *
+ * Ids are handed out in order of appearance, so nodes that are close in the topological order are usually far
+ * apart in the arrays. relabel() renumbers the nodes by their index and copies their neighbour arrays in that
+ * order, with the neighbours of every node sorted by id. A reordering visits nodes that are close in the order,
+ * so afterwards their neighbour arrays are mostly contiguous. The gain is modest, though: a reordering still looks
+ * up every node in the HashMap of ids and in AhrszAlgorithm.node2Index, and these lookups remain the larger part
+ * of its cost.
+ *
+ * getF() and getB() copy the neighbours into a new HashMap on every call. The algorithm only uses them outside of
+ * reorderings; the expansion visits the arrays directly through forEachF() and forEachB().
+ */
+
+public class AdaptiveGraph<N extends Comparable<N>> implements DirectedGraph<N> {
+
+    public static final int DEFAULT_PROMOTION_DEGREE = 16;
+
+    private static final int INITIAL_DEGREE = 2;
+
+    private final int promotionDegree;
+
+    private HashMap<N, Integer> ids;
+    private ArrayList<N> nodes;
+    /**
+     * ids of removed nodes, which are handed out again to new nodes.
+     */
+    private final ArrayDeque<Integer> freeIds;
+
+    private Adjacency forward = new Adjacency();
+    private Adjacency backward = new Adjacency();
+    /**
+     * the number of modifications so far, and at the time of the last relabelling.
+     */
+    private long modifications;
+    private long relabelledAt = -1;
+
+    public AdaptiveGraph() {
+        this(DEFAULT_PROMOTION_DEGREE);
+    }
+
+    /**
+     * @param promotionDegree the degree above which a node gets a hashed representation.
+     */
+
+    public AdaptiveGraph(int promotionDegree) {
+        if (promotionDegree < 2) throw new RuntimeException("The promotion degree must be at least 2.");
+        this.promotionDegree = promotionDegree;
+        this.ids = new HashMap<>();
+        this.nodes = new ArrayList<>();
+        this.freeIds = new ArrayDeque<>();
+    }
+
+    private int intern(N node) {
+        Integer id = ids.get(node);
+        if (id != null) return id;
+        if (! freeIds.isEmpty()) {
+            int freeId = freeIds.pop();
+            ids.put(node, freeId);
+            nodes.set(freeId, node);
+            return freeId;
+        }
+        int newId = nodes.size();
+        ids.put(node, newId);
+        nodes.add(node);
+        forward.ensureCapacity(newId + 1);
+        backward.ensureCapacity(newId + 1);
+        return newId;
+    }
+
+    /**
+     * @return true if the node has a hashed representation in at least one direction.
+     */
+
+    boolean isPromoted(N node) {
+        Integer id = ids.get(node);
+        return id != null && (forward.tables[id] != null || backward.tables[id] != null);
+    }
+
+    private HashMap<N, Float> toMap(Adjacency adjacency, int id) {
+        HashMap<N, Float> result = new HashMap<>();
+        int[] targets = adjacency.targets[id];
+        float[] weights = adjacency.weights[id];
+        for (int i = 0; i < adjacency.sizes[id]; i++) {
+            result.put(nodes.get(targets[i]), weights[i]);
+        }
+        return result;
+    }
+
+    /**
+     * This method returns all outgoing edges together with its weights for a given node, as a copy.
+     */
+
+    @Override
+    public HashMap<N, Float> getF(N key) {
+        Integer id = ids.get(key);
+        if (id == null) return null;
+        return toMap(forward, id);
+    }
+
+    @Override
+    public HashMap<N, Float> getB(N key) {
+        Integer id = ids.get(key);
+        if (id == null) return null;
+        return toMap(backward, id);
+    }
+
+    @Override
+    public void forEachF(N key, EdgeVisitor<N> visitor) {
+        visit(forward, key, visitor);
+    }
+
+    @Override
+    public void forEachB(N key, EdgeVisitor<N> visitor) {
+        visit(backward, key, visitor);
+    }
+
+    private void visit(Adjacency adjacency, N key, EdgeVisitor<N> visitor) {
+        Integer id = ids.get(key);
+        if (id == null) return;
+        int[] targets = adjacency.targets[id];
+        float[] weights = adjacency.weights[id];
+        for (int i = 0; i < adjacency.sizes[id]; i++) {
+            if (! FloatUtils.floatEqual(weights[i], 0f)) visitor.visit(nodes.get(targets[i]), weights[i]);
+        }
+    }
+
+    @Override
+    public void addEdge(N from, N to, float weight) {
+        if (weight < 0f) throw new RuntimeException("Negative weights are not supported.");
+        modifications++;
+        int fromId = intern(from);
+        int toId = intern(to);
+        int slot = forward.find(fromId, toId);
+        if (slot >= 0) {
+            float sum = forward.weights[fromId][slot] + weight;
+            forward.weights[fromId][slot] = sum;
+            backward.weights[toId][backward.find(toId, fromId)] = sum;
+            return;
+        }
+        forward.append(fromId, toId, weight);
+        backward.append(toId, fromId, weight);
+    }
+
+    /**
+     * Removes a cycle from the directed graph.
+     * This works by finding the minimum weight of the edges within the cycle,
+     * and then decreasing each edge of the cycle by the minimum weight.
+     * @param cycle the cycle to be removed.
+     */
+
+    @Override
+    public void removeCycle(List<N> cycle) {
+        modifications++;
+        int size = cycle.size();
+        int[] cycleIds = new int[size];
+        float minWeight = Float.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            cycleIds[i] = ids.get(cycle.get(i));
+        }
+        for (int i = 0; i < size; i++) {
+            int fromId = cycleIds[(i + size - 1) % size];
+            minWeight = Math.min(minWeight, forward.weights[fromId][forward.find(fromId, cycleIds[i])]);
+        }
+        for (int i = 0; i < size; i++) {
+            int fromId = cycleIds[(i + size - 1) % size];
+            int toId = cycleIds[i];
+            int forwardSlot = forward.find(fromId, toId);
+            int backwardSlot = backward.find(toId, fromId);
+            float weight = forward.weights[fromId][forwardSlot] - minWeight;
+            if (FloatUtils.floatEqual(weight, 0f)) {
+                forward.remove(fromId, forwardSlot);
+                backward.remove(toId, backwardSlot);
+            } else {
+                forward.weights[fromId][forwardSlot] = weight;
+                backward.weights[toId][backwardSlot] = weight;
+            }
+        }
+    }
+
+    /**
+     * returns true if and only if there is an edge from node @from to node @to.
+     */
+
+    @Override
+    public boolean hasEdge(N from, N to) {
+        return getWeight(from, to) != null;
+    }
+
+    @Override
+    public Float getWeight(N from, N to) {
+        Integer fromId = ids.get(from);
+        Integer toId = ids.get(to);
+        if (fromId == null || toId == null) return null;
+        int slot = forward.find(fromId, toId);
+        if (slot < 0) return null;
+        float weight = forward.weights[fromId][slot];
+        return FloatUtils.floatEqual(weight, 0f) ? null : weight;
+    }
+
+    /**
+     * Removes the node together with all its incoming and outgoing edges. The id of the node is reused later.
+     */
+
+    @Override
+    public void removeNode(N node) {
+        Integer id = ids.remove(node);
+        if (id == null) return;
+        modifications++;
+        for (int i = 0; i < forward.sizes[id]; i++) {
+            int toId = forward.targets[id][i];
+            backward.remove(toId, backward.find(toId, id));
+        }
+        for (int i = 0; i < backward.sizes[id]; i++) {
+            int fromId = backward.targets[id][i];
+            forward.remove(fromId, forward.find(fromId, id));
+        }
+        forward.clear(id);
+        backward.clear(id);
+        nodes.set(id, null);
+        freeIds.push(id);
+    }
+
+    @Override
+    public Set<N> getForwardKeys() {
+        Set<N> result = new HashSet<>();
+        for (int id = 0; id < nodes.size(); id++) {
+            if (forward.sizes[id] > 0) result.add(nodes.get(id));
+        }
+        return result;
+    }
+
+    @Override
+    public Set<N> getBackwardKeys() {
+        Set<N> result = new HashSet<>();
+        for (int id = 0; id < nodes.size(); id++) {
+            if (backward.sizes[id] > 0) result.add(nodes.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Renumbers the nodes in the order of their indices and lays out their neighbours in that order.
+     * Nodes without an index are placed last. Nothing is done if the graph has not changed since the last call.
+     * @param node2Index the topological order, usually AhrszAlgorithm.node2Index.
+     * @return true if the nodes have been renumbered.
+     */
+
+    public boolean relabel(Map<N, Integer> node2Index) {
+        if (modifications == relabelledAt) return false;
+        Relabelling relabelling = new Relabelling(node2Index);
+        relabelling.build();
+        return install(relabelling);
+    }
+
+    /**
+     * Relabels the graph of @ahrsz periodically on @executor, off the insert path. Each relabelling copies the
+     * order and the neighbour arrays while synchronized on @ahrsz, builds the relabelled arrays from the copy without
+     * holding the lock, and swaps them in while synchronized again. If the graph has been modified in between, the
+     * relabelling is dropped and tried again in the next period. All other threads using the algorithm must
+     * synchronize on @ahrsz as well, as AhrszRegistry does.
+     * @return the future of the task, which can be used to stop relabelling.
+     */
+
+    public ScheduledFuture<?> relabelPeriodically(final AhrszAlgorithm<N> ahrsz, ScheduledExecutorService executor,
+                                                  long period, TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(() -> {
+            Relabelling relabelling;
+            synchronized (ahrsz) {
+                if (modifications == relabelledAt) return;
+                relabelling = new Relabelling(ahrsz.node2Index);
+            }
+            relabelling.build();
+            synchronized (ahrsz) {
+                install(relabelling);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Swaps in a relabelling built from the current state of the graph.
+     * @return false if the graph has been modified since the relabelling copied it.
+     */
+
+    private boolean install(Relabelling relabelling) {
+        if (relabelling.stamp != modifications) return false;
+        ids = relabelling.ids;
+        nodes = relabelling.relabelled;
+        forward = relabelling.forward;
+        backward = relabelling.backward;
+        freeIds.clear();
+        relabelledAt = modifications;
+        return true;
+    }
+
+    /**
+     * A relabelling of the graph as it was at the modification @stamp. The constructor copies what is needed, so
+     * build() can run while the graph is modified; the result is then only valid if the stamp still matches.
+     */
+
+    private final class Relabelling {
+
+        final long stamp;
+        private final ArrayList<N> original;
+        private final long[] keys;
+        private Adjacency forward;
+        private Adjacency backward;
+        HashMap<N, Integer> ids;
+        ArrayList<N> relabelled;
+
+        Relabelling(Map<N, Integer> node2Index) {
+            this.stamp = modifications;
+            this.original = new ArrayList<>(nodes);
+            this.keys = new long[nodes.size() - freeIds.size()];
+            int live = 0;
+            for (int id = 0; id < nodes.size(); id++) {
+                N node = nodes.get(id);
+                if (node == null) continue;
+                Integer index = node2Index.get(node);
+                keys[live++] = ((long) (index == null ? Integer.MAX_VALUE : index) << 32) | id;
+            }
+            this.forward = AdaptiveGraph.this.forward.copy(nodes.size());
+            this.backward = AdaptiveGraph.this.backward.copy(nodes.size());
+        }
+
+        void build() {
+            Arrays.sort(keys);
+            int live = keys.length;
+            int[] order = new int[live];
+            int[] newIds = new int[original.size()];
+            relabelled = new ArrayList<>(live);
+            ids = new HashMap<>();
+            for (int newId = 0; newId < live; newId++) {
+                int oldId = (int) keys[newId];
+                order[newId] = oldId;
+                newIds[oldId] = newId;
+                N node = original.get(oldId);
+                relabelled.add(node);
+                ids.put(node, newId);
+            }
+            forward = forward.relabelled(order, newIds);
+            backward = backward.relabelled(order, newIds);
+        }
+    }
+
+    /**
+     * The neighbours of all nodes in one direction.
+     *
+     * The table of a promoted node has a power of two length of at least twice its degree. An entry holds the slot
+     * of a neighbour plus one, 0 marks an empty entry. Collisions are resolved by linear probing, and entries are
+     * removed by shifting the following entries back, so no tombstones are needed.
+     */
+
+    private final class Adjacency {
+
+        private int[][] targets = new int[16][];
+        private float[][] weights = new float[16][];
+        private int[] sizes = new int[16];
+        private int[][] tables = new int[16][];
+
+        void ensureCapacity(int capacity) {
+            if (capacity <= sizes.length) return;
+            int length = Math.max(capacity, sizes.length * 2);
+            targets = Arrays.copyOf(targets, length);
+            weights = Arrays.copyOf(weights, length);
+            sizes = Arrays.copyOf(sizes, length);
+            tables = Arrays.copyOf(tables, length);
+        }
+
+        /**
+         * @return the slot of the neighbour, or -1 if it is not a neighbour of the node.
+         */
+
+        int find(int id, int neighbour) {
+            int[] table = tables[id];
+            int[] ids = targets[id];
+            if (table == null) {
+                for (int i = 0; i < sizes[id]; i++) {
+                    if (ids[i] == neighbour) return i;
+                }
+                return -1;
+            }
+            int mask = table.length - 1;
+            for (int h = hash(neighbour) & mask; table[h] != 0; h = (h + 1) & mask) {
+                if (ids[table[h] - 1] == neighbour) return table[h] - 1;
+            }
+            return -1;
+        }
+
+        void append(int id, int neighbour, float weight) {
+            int size = sizes[id];
+            if (targets[id] == null) {
+                targets[id] = new int[INITIAL_DEGREE];
+                weights[id] = new float[INITIAL_DEGREE];
+            } else if (size == targets[id].length) {
+                targets[id] = Arrays.copyOf(targets[id], size * 2);
+                weights[id] = Arrays.copyOf(weights[id], size * 2);
+            }
+            targets[id][size] = neighbour;
+            weights[id][size] = weight;
+            sizes[id] = size + 1;
+            if (tables[id] != null) {
+                if (2 * (size + 1) > tables[id].length) {
+                    rebuild(id);
+                } else {
+                    insert(tables[id], neighbour, size);
+                }
+            } else if (size + 1 > promotionDegree) {
+                rebuild(id);
+            }
+        }
+
+        /**
+         * Removes the neighbour in the given slot, and moves the last neighbour into the slot.
+         */
+
+        void remove(int id, int slot) {
+            int last = --sizes[id];
+            int[] table = tables[id];
+            if (table != null) {
+                if (last < promotionDegree / 2) {
+                    tables[id] = null;
+                } else {
+                    delete(table, targets[id], targets[id][slot]);
+                    if (slot != last) relink(table, targets[id], targets[id][last], slot);
+                }
+            }
+            targets[id][slot] = targets[id][last];
+            weights[id][slot] = weights[id][last];
+        }
+
+        /**
+         * @return a copy in which the node with the new id i is the node with the old id order[i], and the neighbours
+         * of every node are sorted by their new ids. The arrays are allocated in the new order, so that they are
+         * laid out next to each other.
+         */
+
+        Adjacency relabelled(int[] order, int[] newIds) {
+            Adjacency result = new Adjacency();
+            result.ensureCapacity(order.length);
+            long[] keys = new long[16];
+            for (int newId = 0; newId < order.length; newId++) {
+                int oldId = order[newId];
+                int size = sizes[oldId];
+                if (size == 0) continue;
+                if (keys.length < size) keys = new long[Math.max(size, keys.length * 2)];
+                for (int i = 0; i < size; i++) {
+                    keys[i] = ((long) newIds[targets[oldId][i]] << 32)
+                            | (Float.floatToRawIntBits(weights[oldId][i]) & 0xffffffffL);
+                }
+                Arrays.sort(keys, 0, size);
+                int capacity = Math.max(size, INITIAL_DEGREE);
+                int[] newTargets = new int[capacity];
+                float[] newWeights = new float[capacity];
+                for (int i = 0; i < size; i++) {
+                    newTargets[i] = (int) (keys[i] >>> 32);
+                    newWeights[i] = Float.intBitsToFloat((int) keys[i]);
+                }
+                result.targets[newId] = newTargets;
+                result.weights[newId] = newWeights;
+                result.sizes[newId] = size;
+                if (tables[oldId] != null) result.rebuild(newId);
+            }
+            return result;
+        }
+
+        /**
+         * @return a copy of the neighbours of the first @count ids. The tables are shared, relabelled() only checks
+         * whether a node has one.
+         */
+
+        Adjacency copy(int count) {
+            Adjacency result = new Adjacency();
+            result.ensureCapacity(count);
+            for (int id = 0; id < count; id++) {
+                int size = sizes[id];
+                if (size == 0) continue;
+                result.targets[id] = Arrays.copyOf(targets[id], size);
+                result.weights[id] = Arrays.copyOf(weights[id], size);
+                result.sizes[id] = size;
+                result.tables[id] = tables[id];
+            }
+            return result;
+        }
+
+        void clear(int id) {
+            targets[id] = null;
+            weights[id] = null;
+            sizes[id] = 0;
+            tables[id] = null;
+        }
+
+        private void rebuild(int id) {
+            int size = sizes[id];
+            int[] table = new int[Integer.highestOneBit(Math.max(size, 2) * 4 - 1)];
+            for (int i = 0; i < size; i++) {
+                insert(table, targets[id][i], i);
+            }
+            tables[id] = table;
+        }
+
+        private void insert(int[] table, int neighbour, int slot) {
+            int mask = table.length - 1;
+            int h = hash(neighbour) & mask;
+            while (table[h] != 0) h = (h + 1) & mask;
+            table[h] = slot + 1;
+        }
+
+        /**
+         * Points the entry of the neighbour to a new slot.
+         */
+
+        private void relink(int[] table, int[] ids, int neighbour, int slot) {
+            int mask = table.length - 1;
+            int h = hash(neighbour) & mask;
+            while (ids[table[h] - 1] != neighbour) h = (h + 1) & mask;
+            table[h] = slot + 1;
+        }
+
+        private void delete(int[] table, int[] ids, int neighbour) {
+            int mask = table.length - 1;
+            int h = hash(neighbour) & mask;
+            while (ids[table[h] - 1] != neighbour) h = (h + 1) & mask;
+            // shift back the following entries that would no longer be found.
+            int hole = h;
+            for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+                int home = hash(ids[table[next] - 1]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    table[hole] = table[next];
+                    hole = next;
+                }
+            }
+            table[hole] = 0;
+        }
+
+        private int hash(int neighbour) {
+            int h = neighbour * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+}
@@ -3,6 +3,9 @@ package org.ahrsz;
 import com.google.common.collect.Lists;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * Implementation of the AHRSZ algorithm, for maintaining a topological order upon
@@ -19,6 +22,10 @@ import java.util.*;
  * A newly inserted edge may introduce multiple cycles at once. In this case it is up to the implementation to chose
  * the order of removing the cycles. This may lead to different remaining graphs.
  *
+ * Optionally, cycles can be contracted instead of being removed. In this mode the nodes of a cycle are merged
+ * into a single component, which occupies one position in the topological order. The weights of the edges
+ * are left untouched. See ContractingGraph.
+ *
  * @param <N> N is the type of the nodes.
  */
 
@@ -31,16 +38,107 @@ public class AhrszAlgorithm<N extends Comparable<N>> {
     public Map<N,Integer> node2Index;
     private int maxIndex;
     private int minIndex;
+    /**
+     * indices between minIndex and maxIndex that are not occupied by any node, null before the first node is removed.
+     */
+    private TreeSet<Integer> freeSlots;
+    /**
+     * the contracted view on the graph if cycles are contracted, null otherwise.
+     */
+    private ContractingGraph<N> contractingGraph;
+    /**
+     * the longest-path levels of the nodes if they are tracked, null otherwise.
+     */
+    private LevelIndex<N> levelIndex;
+    /**
+     * the nodes whose incoming edges changed during the current insertion, null if levels are not tracked.
+     */
+    private List<N> touched;
+    /**
+     * the changes of the order caused by the current insertion, null unless a delta listener or checking needs them.
+     */
+    private OrderDelta<N> delta;
+    private long deltaSequence;
+    private OrderDeltaListener<N> deltaListener;
+    /**
+     * the edge of the last insertion, in terms of representatives.
+     */
+    private N lastFrom;
+    private N lastTo;
+    private int checkInterval;
+    private int insertsSinceCheck;
+    /**
+     * provides the scratch state for reorderings. By default every algorithm reuses its own state, which is
+     * allocated by the first reordering, AhrszRegistry shares thread local states between many algorithms.
+     */
+    private Supplier<ExpansionState<N>> scratch;
+    /**
+     * runs the forward search of large reorderings in parallel to the backward search, if not null.
+     */
+    private ExecutorService searchExecutor;
+    private int parallelThreshold;
+    /**
+     * the cached answers of reachable(), null if they are not cached.
+     */
+    private ReachabilityCache<N> reachabilityCache;
+    /**
+     * the persistent copy of the order and the edges that snapshots are taken from, null before the first snapshot.
+     */
+    private VersionedOrder<N> versionedOrder;
+    /**
+     * collects the statistics of the current insertion for JFR, null until an insertion is recorded or configured.
+     */
+    private InsertRecorder<N> recorder;
 
     public AhrszAlgorithm(DirectedGraph<N> directedGraph) {
+        this(directedGraph, false);
+    }
+
+    /**
+     * @param directedGraph the graph to maintain the topological order for.
+     * @param contractCycles if true, cycles are contracted into a single component instead of being removed.
+     */
+
+    public AhrszAlgorithm(DirectedGraph<N> directedGraph, boolean contractCycles) {
+        if (contractCycles) {
+            this.contractingGraph = new ContractingGraph<>(directedGraph);
+            directedGraph = this.contractingGraph;
+        }
         this.directedGraph = directedGraph;
         node2Index = new HashMap<>();
+        scratch = new Supplier<ExpansionState<N>>() {
+            private ExpansionState<N> own;
+
+            @Override
+            public ExpansionState<N> get() {
+                if (own == null) own = new ExpansionState<>();
+                return own;
+            }
+        };
         maxIndex = 1;  // the index of the next top insertion
         minIndex = 0;  // the index of the next bottom insertion
     }
 
     private void put(N node, int index) {
-        this.node2Index.put(node, index);
+        Integer previous = this.node2Index.put(node, index);
+        if (versionedOrder != null && (previous == null || previous != index)) {
+            versionedOrder.indexChanged(node, index);
+        }
+        if (reachabilityCache != null && previous != null && previous != index) {
+            reachabilityCache.indexChanged(node, index);
+        }
+        if (previous == null) {
+            if (delta != null) delta.nodeAdded(node, index);
+        } else if (previous != index) {
+            if (delta != null) delta.nodeMoved(node, index);
+        }
+    }
+
+    private void remove(N node) {
+        this.node2Index.remove(node);
+        if (versionedOrder != null) versionedOrder.nodeRemoved(node);
+        if (reachabilityCache != null) reachabilityCache.nodeRemoved(node);
+        if (delta != null) delta.nodeRemoved(node);
     }
 
     /**
@@ -54,20 +152,154 @@ public class AhrszAlgorithm<N extends Comparable<N>> {
 
     public void addEdge(N from, N to, float weight) throws InvalidExpansionStateException, InvalidAhrszStateException {
         if (from.equals(to)) return;
-        directedGraph.addEdge(from, to, weight);
+        if (recorder == null && InsertRecorder.enabled()) recorder = new InsertRecorder<>();
+        boolean recording = recorder != null && recorder.begin();
+        try {
+            directedGraph.addEdge(from, to, weight);
+            edgeAdded(from, to);
+        } finally {
+            // a failed insertion is recorded as well, so that no begun event is left open.
+            if (recording) recorder.commit(from, to, weight);
+        }
+    }
+
+    /**
+     * Attaches the nodes moved by an insertion to its JFR event if the insertion took longer than @thresholdNanos.
+     * Insertions are only recorded while a JFR recording has the event org.ahrsz.Insert enabled. The event
+     * always contains the inserted edge, the number of expansion rounds and removed cycles, the peak sizes of
+     * both frontiers and the number of switched nodes.
+     * @param maxAffectedNodes the maximum number of nodes attached to an event, 0 attaches none.
+     */
+
+    public void recordSlowInserts(long thresholdNanos, int maxAffectedNodes) {
+        if (recorder == null) recorder = new InsertRecorder<>();
+        recorder.configure(thresholdNanos, maxAffectedNodes);
+    }
+
+    /**
+     * Places an edge in the order that has already been added to the graph, for example by a ThresholdGraph
+     * that shares its weights between many views.
+     */
+
+    void edgeAdded(N from, N to) throws InvalidAhrszStateException {
+        if (touched != null) touched.clear();
+        if (delta != null) delta.clear();
+        if (versionedOrder != null) versionedOrder.edgeChanged(from, to);
+        from = representative(from);
+        to = representative(to);
+        // the edge lies within a contracted component.
+        if (from.equals(to)) return;
+        lastFrom = from;
+        lastTo = to;
+        insert(from, to);
+        if (reachabilityCache != null && directedGraph.hasEdge(from, to)) {
+            reachabilityCache.edgeAdded(node2Index.get(from), node2Index.get(to));
+        }
+        if (levelIndex != null) {
+            // an invisible edge changes no level, but new nodes need one.
+            boolean visible = directedGraph.hasEdge(from, to);
+            if (visible || levelIndex.level(from) < 0) touched.add(from);
+            if (visible || levelIndex.level(to) < 0) touched.add(to);
+            if (! touched.isEmpty()) levelIndex.update(touched);
+        }
+        if (deltaListener != null && ! delta.isEmpty()) {
+            delta.setSequence(++deltaSequence);
+            deltaListener.onDelta(delta);
+        }
+        if (checkInterval > 0 && ++insertsSinceCheck >= checkInterval) {
+            insertsSinceCheck = 0;
+            AhrszChecker.checkLastInsert(this);
+        }
+    }
+
+    /**
+     * Verifies the order after every interval-th insertion with AhrszChecker.checkLastInsert().
+     * If the order has been corrupted, addEdge throws an InvalidAhrszStateException.
+     * @param interval the sampling interval, 1 checks every insertion, 0 disables checking.
+     */
+
+    public void checkEvery(int interval) {
+        if (interval > 0 && delta == null) delta = new OrderDelta<>();
+        this.checkInterval = interval;
+        this.insertsSinceCheck = 0;
+    }
+
+    /**
+     * @return a rough estimate of the bytes held by the structures that are only allocated on demand, assuming
+     * compressed oops: the free slots, the touched nodes, the delta and the recorder. A free slot costs a TreeMap
+     * entry and its boxed index.
+     */
+
+    long auxiliaryBytes() {
+        long bytes = 0;
+        if (freeSlots != null) bytes += 48 + 56L * freeSlots.size();
+        if (touched != null) bytes += 40 + 4L * touched.size();
+        if (delta != null) bytes += delta.estimatedBytes();
+        if (recorder != null) bytes += recorder.estimatedBytes();
+        return bytes;
+    }
+
+    /**
+     * @return the changes of the last insertion, null if they are not recorded.
+     */
+
+    OrderDelta<N> lastDelta() {
+        return delta;
+    }
+
+    N lastFrom() {
+        return lastFrom;
+    }
+
+    N lastTo() {
+        return lastTo;
+    }
+
+    /**
+     * Registers a listener that receives the changes of the order after every insertion that changed it.
+     * The deltas can be encoded with an OrderDeltaEncoder and shipped to replicas.
+     */
+
+    public void setDeltaListener(OrderDeltaListener<N> deltaListener) {
+        if (deltaListener != null && delta == null) delta = new OrderDelta<>();
+        this.deltaListener = deltaListener;
+    }
+
+    /**
+     * Places the edge from @from to @to in the topological order.
+     */
+
+    private void insert(N from, N to) throws InvalidAhrszStateException {
         // both nodes are new.
         if (! node2Index.containsKey(from) && ! node2Index.containsKey(to)) {
+            if (freeSlots != null && freeSlots.size() >= 2) {
+                this.put(from, freeSlots.pollFirst());
+                this.put(to, freeSlots.pollFirst());
+                return;
+            }
             insertTop(from, to);
             return;
         }
         // only <from> is new
         if (! node2Index.containsKey(from)) {
+            Integer slot = freeSlots == null ? null : freeSlots.lower(node2Index.get(to));
+            if (slot != null) {
+                freeSlots.remove(slot);
+                this.put(from, slot);
+                return;
+            }
             this.put(from, minIndex);
             this.minIndex--;
             return;
         }
         // only <to> is new
         if (! node2Index.containsKey(to)) {
+            Integer slot = freeSlots == null ? null : freeSlots.higher(node2Index.get(from));
+            if (slot != null) {
+                freeSlots.remove(slot);
+                this.put(to, slot);
+                return;
+            }
             this.put(to, maxIndex);
             this.maxIndex++;
             return;
@@ -78,6 +310,85 @@ public class AhrszAlgorithm<N extends Comparable<N>> {
         reorder(from,to);
     }
 
+    /**
+     * Frees the index of a removed node. Free indices at the top or bottom of the order are given back,
+     * so that the occupied index range stays as small as possible.
+     */
+
+    private void freeSlot(int index) {
+        if (freeSlots == null) freeSlots = new TreeSet<>();
+        freeSlots.add(index);
+        while (freeSlots.remove(maxIndex - 1)) maxIndex--;
+        while (freeSlots.remove(minIndex + 1)) minIndex++;
+    }
+
+    /**
+     * Remembers a node whose level has to be updated, if levels are tracked.
+     */
+
+    private void touch(N node) {
+        if (touched != null) touched.add(node);
+    }
+
+    /**
+     * Removes a node together with all its incoming and outgoing edges. The index of the node is reused
+     * by later insertions wherever the order permits.
+     * If cycles are contracted and the node belongs to a larger component, only the node is removed from the
+     * component, and the rest of the component keeps its position.
+     * @param node the node to remove.
+     */
+
+    public void removeNode(N node) {
+        if (touched != null) touched.clear();
+        if (delta != null) delta.clear();
+        N rep = representative(node);
+        Integer index = node2Index.get(rep);
+        if (index == null) return;
+        if (reachabilityCache != null) {
+            if (contractingGraph != null) {
+                reachabilityCache.clear();
+            } else {
+                reachabilityCache.edgesRemoved(index, index);
+            }
+        }
+        for (Map.Entry<N, Float> edge : safe(directedGraph.getF(rep)).entrySet()) {
+            touch(edge.getKey());
+        }
+        N remainder = contractingGraph == null ? null : contractingGraph.detach(node);
+        for (N successor : safe(directedGraph.getF(node)).keySet()) {
+            if (delta != null) delta.edgeRemoved(node, successor);
+        }
+        for (N predecessor : safe(directedGraph.getB(node)).keySet()) {
+            if (delta != null) delta.edgeRemoved(predecessor, node);
+        }
+        if (contractingGraph != null) {
+            contractingGraph.getGraph().removeNode(node);
+        } else {
+            directedGraph.removeNode(node);
+        }
+        if (levelIndex != null) levelIndex.remove(node);
+        if (remainder == null) {
+            remove(node);
+            freeSlot(index);
+        } else {
+            if (rep.equals(node)) {
+                remove(node);
+                this.put(remainder, index);
+            }
+            if (levelIndex != null) levelIndex.remove(remainder);
+            touch(remainder);
+        }
+        if (levelIndex != null) levelIndex.update(touched);
+        if (deltaListener != null && ! delta.isEmpty()) {
+            delta.setSequence(++deltaSequence);
+            deltaListener.onDelta(delta);
+        }
+    }
+
+    private static <N> Map<N, Float> safe(Map<N, Float> edges) {
+        return edges == null ? Collections.<N, Float>emptyMap() : edges;
+    }
+
     private void insertTop(N from, N to) {
         this.put(from, this.maxIndex);
         this.maxIndex++;
@@ -93,24 +404,129 @@ public class AhrszAlgorithm<N extends Comparable<N>> {
      */
 
     private void reorder(final N from, final N to) throws InvalidAhrszStateException {
-        ExpansionState<N> es = new ExpansionState<>(from, to);
+        if (contractingGraph != null) {
+            contractAndReorder(from, to);
+            return;
+        }
+        if (searchExecutor != null && node2Index.get(from) - node2Index.get(to) >= parallelThreshold) {
+            parallelReorder(from, to);
+            return;
+        }
+        ExpansionState<N> es = scratch.get();
+        int fromIndex = node2Index.get(from);
+        int toIndex = node2Index.get(to);
+        es.success = false;
         while (! es.success) { // repeat until no more cycles found
             // the edge to be inserted may be removed when cycles are detected.
             // Once this newly inserted edge has been removed, there is no need to reorder.
             if (! this.directedGraph.hasEdge(from, to)) return;
-            es = new ExpansionState<N>(from, to);
+            es.reset(from, fromIndex, to, toIndex);
             this.expand(es);
         }
         // es.check(this.node2Index);
-        switchPositions(es.shiftUp, es.shiftDown);
+        switchPositions(es);
+    }
+
+    /**
+     * Reorders the graph like reorder(), but searches the affected region with a BidirectionalSearch.
+     * Cycles found by the search are removed on the calling thread before searching again.
+     */
+
+    private void parallelReorder(final N from, final N to) {
+        while (this.directedGraph.hasEdge(from, to)) {
+            BidirectionalSearch<N> search = new BidirectionalSearch<>(directedGraph, node2Index, from, to);
+            if (recorder != null) recorder.expansionRounds++;
+            if (! search.run(searchExecutor)) {
+                switchPositions(search.forwardRegion(), search.backwardRegion(), scratch.get());
+                return;
+            }
+            removeCycle(search.cycle());
+        }
+    }
+
+    /**
+     * Reorders the graph when cycles are contracted.
+     *
+     * The affected region is searched as in the algorithm of Pearce and Kelly: forward from @to over nodes
+     * positioned before @from, and backward from @from over nodes positioned after @to. The nodes found by
+     * both searches form a cycle with the new edge, and are contracted into one component at the position of @from.
+     * Afterwards the nodes found backward are moved before the nodes found forward, using the positions they
+     * occupied so far. The contracted component ends up between both groups.
+     */
+
+    private void contractAndReorder(final N from, final N to) {
+        int lower = node2Index.get(to);
+        int upper = node2Index.get(from);
+        Set<N> forward = reach(to, from, upper, true);
+        Set<N> backward = reach(from, to, lower, false);
+        List<N> cycle = new ArrayList<>();
+        for (N node : forward) {
+            if (backward.contains(node)) cycle.add(node);
+        }
+        if (recorder != null) recorder.expansionRounds++;
+        if (! cycle.isEmpty()) {
+            if (recorder != null) recorder.cyclesRemoved++;
+            // the contracted nodes are no longer valid keys.
+            if (reachabilityCache != null) reachabilityCache.clear();
+            N rep = contractingGraph.contract(cycle);
+            for (N node : cycle) {
+                int index = node2Index.get(node);
+                if (index != upper) freeSlot(index);
+                if (! node.equals(rep)) remove(node);
+                if (levelIndex != null) levelIndex.remove(node);
+            }
+            touch(rep);
+            this.put(rep, upper);
+            forward.removeAll(cycle);
+            backward.removeAll(cycle);
+            backward.add(rep);
+        }
+        switchPositions(forward, backward, scratch.get());
+    }
+
+    /**
+     * Finds all nodes reachable from start in the given direction, only passing through nodes positioned
+     * strictly between start and bound. The node target is included if it is reached.
+     */
+
+    private Set<N> reach(N start, N target, int bound, boolean forward) {
+        Set<N> visited = new HashSet<>();
+        Deque<N> stack = new ArrayDeque<>();
+        List<N> neighbours = new ArrayList<>();
+        EdgeVisitor<N> collector = (next, weight) -> neighbours.add(next);
+        visited.add(start);
+        stack.push(start);
+        while (! stack.isEmpty()) {
+            N node = stack.pop();
+            neighbours.clear();
+            if (forward) {
+                directedGraph.forEachF(node, collector);
+            } else {
+                directedGraph.forEachB(node, collector);
+            }
+            for (N next : neighbours) {
+                if (visited.contains(next)) continue;
+                if (next.equals(target)) {
+                    visited.add(next);
+                    continue;
+                }
+                int index = node2Index.get(next);
+                if (forward ? index >= bound : index <= bound) continue;
+                visited.add(next);
+                stack.push(next);
+            }
+        }
+        return visited;
     }
 
     private void expand(ExpansionState<N> es) {
         // while the frontiers are not empty.
         while (! es.finished()) {
+            if (recorder != null) recorder.expansionRounds++;
             es.success = expandForward(es);
             if (! es.success) return;
             es.success = expandBackward(es);
+            if (recorder != null) recorder.frontiers(es.forwardQueue.size(), es.backwardQueue.size());
             if (! es.success) return;
         }
     }
@@ -121,14 +537,17 @@ public class AhrszAlgorithm<N extends Comparable<N>> {
         if (es.backwardQueue.isEmpty()) { return true; }
         Path<N> highestPath = es.backwardQueue.remove();
         N highest = highestPath.get(highestPath.size() - 1);
-        if (this.directedGraph.getB(highest) == null) return true;
-        for (N predecessor : this.directedGraph.getB(highest).keySet()) {
-            if (node2Index.get(predecessor) <= node2Index.get(es.to)) continue;
+        es.neighbours.clear();
+        this.directedGraph.forEachB(highest, es.collector);
+        int toIndex = es.shiftUp.get(es.to);
+        for (N predecessor : es.neighbours) {
+            int index = node2Index.get(predecessor);
+            if (index <= toIndex) continue;
             if (detectAndRemoveCycle(es.forwardQueue, predecessor, highestPath, direction.backward)) return false;
             Path<N> predecessorPath = new Path<N>(highestPath);
             predecessorPath.add(predecessor);
             es.backwardQueue.add(predecessorPath);
-            es.shiftDown.add(predecessor);
+            es.shiftDown.put(predecessor, index);
         }
         return true;
     }
@@ -139,17 +558,20 @@ public class AhrszAlgorithm<N extends Comparable<N>> {
         // and examine all successors.
         Path<N> lowestPath = es.forwardQueue.remove();
         N lowest = lowestPath.get(lowestPath.size() - 1);
-        // check if there are any outgoing edges from the end of the lowest path.
-        if (this.directedGraph.getF(lowest) == null) return true;
-        for (N successor : this.directedGraph.getF(lowest).keySet()) {
+        // collect the outgoing edges from the end of the lowest path.
+        es.neighbours.clear();
+        this.directedGraph.forEachF(lowest, es.collector);
+        int fromIndex = es.shiftDown.get(es.from);
+        for (N successor : es.neighbours) {
             if (detectAndRemoveCycle(es.backwardQueue, successor, lowestPath, direction.forward)) return false;
             // only add nodes to the frontier that have higher priority then the source of the
             // new edge.
-            if (node2Index.get(successor) >= node2Index.get(es.from)) continue;
+            int index = node2Index.get(successor);
+            if (index >= fromIndex) continue;
             Path<N> successorPath = new Path<N>(lowestPath);
             successorPath.add(successor);
             es.forwardQueue.add(successorPath);
-            es.shiftUp.add(successor);
+            es.shiftUp.put(successor, index);
         }
         return true;
     }
@@ -182,43 +604,311 @@ public class AhrszAlgorithm<N extends Comparable<N>> {
         ArrayList<Path<N>> backwardList = new ArrayList<>(queue);
         int index = backwardList.indexOf(new Path<>(successor));
         path.addAll(Lists.reverse(backwardList.get(index)));
-        if (dir == direction.forward) {
-            this.directedGraph.removeCycle(path);
-        } else {
-            this.directedGraph.removeCycle(Lists.reverse(path));
-        }
+        removeCycle(dir == direction.forward ? path : Lists.reverse(path));
         return true;
     }
 
+    /**
+     * Removes a cycle from the graph and records the edges that disappeared.
+     * @param cycle the nodes of the cycle in the direction of its edges.
+     */
+
+    private void removeCycle(List<N> cycle) {
+        if (reachabilityCache != null) {
+            int low = Integer.MAX_VALUE;
+            int high = Integer.MIN_VALUE;
+            for (N node : cycle) {
+                low = Math.min(low, node2Index.get(node));
+                high = Math.max(high, node2Index.get(node));
+            }
+            reachabilityCache.edgesRemoved(low, high);
+        }
+        if (recorder != null) recorder.cyclesRemoved++;
+        if (touched != null) touched.addAll(cycle);
+        this.directedGraph.removeCycle(cycle);
+        for (int i = 0; i < cycle.size(); i++) {
+            N source = cycle.get(i);
+            N sink = cycle.get((i + 1) % cycle.size());
+            if (versionedOrder != null) versionedOrder.edgeChanged(source, sink);
+            if (delta != null && ! this.directedGraph.hasEdge(source, sink)) delta.edgeRemoved(source, sink);
+        }
+    }
+
     public boolean before(N n1, N n2) {
-        return this.node2Index.get(n1) < this.node2Index.get(n2);
+        return this.node2Index.get(representative(n1)) < this.node2Index.get(representative(n2));
+    }
+
+    /**
+     * Sorts @nodes by their position in the topological order. Nodes that are not part of the order come first,
+     * as with IndexComparator, and the sort is stable.
+     *
+     * The index of every node is looked up once, the nodes are then ordered by a radix sort on the indices.
+     */
+
+    public void sortByOrder(N[] nodes) {
+        sortByOrder(nodes, false);
     }
 
-    private List<N> sortByIndex(Collection<N> toBeSorted) {
-        List<N> result = new ArrayList<>(toBeSorted);
-        Collections.sort(result, new IndexComparator<N>(this.node2Index));
+    /**
+     * Sorts @nodes like sortByOrder(), but looks up the indices and sorts in parallel on the common ForkJoinPool
+     * once there are at least IndexSorter.PARALLEL_THRESHOLD nodes. The order must not be modified meanwhile.
+     */
+
+    public void parallelSortByOrder(N[] nodes) {
+        sortByOrder(nodes, true);
+    }
+
+    /**
+     * @return a new list of the given nodes, sorted like sortByOrder().
+     */
+
+    public List<N> sortByOrder(Collection<? extends N> nodes) {
+        Object[] array = nodes.toArray();
+        sortByOrder(array, false);
+        @SuppressWarnings(value = "unchecked")
+        List<N> result = (List<N>) (List<?>) Arrays.asList(array);
         return result;
     }
 
+    private void sortByOrder(Object[] nodes, boolean parallel) {
+        int[] keys = keys(nodes, parallel);
+        int[] positions = IndexSorter.order(keys, parallel);
+        Object[] copy = nodes.clone();
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = copy[positions[i]];
+        }
+    }
+
+    /**
+     * Moves the nodes positioned before @pivot to the front of @nodes, keeping the relative order of the nodes
+     * within both parts. Nodes that are not part of the order count as positioned before @pivot, unless @pivot
+     * is not part of the order either.
+     * @return the number of nodes positioned before @pivot.
+     */
+
+    public int partitionByOrder(N[] nodes, N pivot) {
+        Integer pivotIndex = node2Index.get(representative(pivot));
+        int bound = pivotIndex == null ? 0 : pivotIndex - minIndex;
+        int[] keys = keys(nodes, false);
+        Object[] copy = nodes.clone();
+        int before = 0;
+        for (int key : keys) {
+            if (key < bound) before++;
+        }
+        int low = 0;
+        int high = before;
+        for (int i = 0; i < copy.length; i++) {
+            @SuppressWarnings(value = "unchecked")
+            N node = (N) copy[i];
+            nodes[keys[i] < bound ? low++ : high++] = node;
+        }
+        return before;
+    }
+
+    /**
+     * @return the index of every node relative to minIndex, which is always positive, or 0 for nodes that are
+     * not part of the order.
+     */
+
+    private int[] keys(final Object[] nodes, boolean parallel) {
+        final int[] keys = new int[nodes.length];
+        if (parallel && nodes.length >= IndexSorter.PARALLEL_THRESHOLD) {
+            IntStream.range(0, nodes.length).parallel().forEach(i -> keys[i] = key(nodes[i]));
+        } else {
+            for (int i = 0; i < nodes.length; i++) {
+                keys[i] = key(nodes[i]);
+            }
+        }
+        return keys;
+    }
+
+    @SuppressWarnings(value = "unchecked")
+    private int key(Object node) {
+        Integer index = node2Index.get(representative((N) node));
+        return index == null ? 0 : index - minIndex;
+    }
+
+    /**
+     * Returns true if and only if there is a path of visible edges from @from to @to.
+     *
+     * The search only follows edges to nodes positioned before @to, since no other node can lie on such a path.
+     * If reachability is cached, the answer is taken from the cache when possible.
+     */
+
+    public boolean reachable(N from, N to) {
+        from = representative(from);
+        to = representative(to);
+        if (from.equals(to)) return true;
+        Integer fromIndex = node2Index.get(from);
+        Integer toIndex = node2Index.get(to);
+        if (fromIndex == null || toIndex == null || fromIndex > toIndex) return false;
+        if (reachabilityCache != null) {
+            Boolean answer = reachabilityCache.get(from, to);
+            if (answer != null) return answer;
+        }
+        boolean answer = search(from, to, toIndex);
+        if (reachabilityCache != null) reachabilityCache.put(from, fromIndex, to, toIndex, answer);
+        return answer;
+    }
+
+    private boolean search(N from, final N to, final int toIndex) {
+        final Set<N> visited = new HashSet<>();
+        final Deque<N> stack = new ArrayDeque<>();
+        final boolean[] found = new boolean[1];
+        EdgeVisitor<N> visitor = (next, weight) -> {
+            if (next.equals(to)) {
+                found[0] = true;
+            } else if (node2Index.get(next) < toIndex && visited.add(next)) {
+                stack.push(next);
+            }
+        };
+        visited.add(from);
+        stack.push(from);
+        while (! stack.isEmpty() && ! found[0]) {
+            directedGraph.forEachF(stack.pop(), visitor);
+        }
+        return found[0];
+    }
+
+    /**
+     * Caches the answers of reachable() in an LRU cache. Insertions, cycle removals and node removals only drop
+     * the cached answers they can affect, see ReachabilityCache. Changes of the graph that bypass this algorithm,
+     * like decaying weights, are not noticed; call this method again to start with an empty cache.
+     * @param capacity the maximum number of cached answers, 0 disables caching.
+     */
+
+    public void cacheReachability(int capacity) {
+        this.reachabilityCache = capacity > 0 ? new ReachabilityCache<N>(capacity) : null;
+    }
+
+    /**
+     * @return the node that represents n in the topological order. Unless cycles are contracted, this is n itself.
+     */
+
+    public N representative(N n) {
+        return contractingGraph == null ? n : contractingGraph.find(n);
+    }
+
+    /**
+     * Starts maintaining the longest-path level of every node. From then on, the levels are updated
+     * incrementally with every inserted edge.
+     * @return the levels of the nodes.
+     */
+
+    public LevelIndex<N> trackLevels() {
+        if (levelIndex == null) {
+            levelIndex = new LevelIndex<>(this.directedGraph, this.node2Index);
+            touched = new ArrayList<>();
+        }
+        return levelIndex;
+    }
+
+    /**
+     * Takes a snapshot of the current order and the visible edges. The first call copies both once into persistent
+     * maps, which are kept up to date from then on, so that every further snapshot is taken in constant time and
+     * shares its storage with the live order. Changes of the graph that bypass this algorithm, like decaying
+     * weights, are only noticed when the changed edge is inserted again.
+     * Snapshots are not supported when cycles are contracted.
+     */
+
+    public OrderSnapshot<N> snapshot() {
+        if (contractingGraph != null) {
+            throw new IllegalStateException("Snapshots are not supported when cycles are contracted.");
+        }
+        if (versionedOrder == null) {
+            versionedOrder = new VersionedOrder<>(directedGraph, node2Index);
+        }
+        return versionedOrder.snapshot();
+    }
+
+    /**
+     * Lets reorderings whose affected index range spans at least @threshold positions search forward and backward
+     * at the same time, the forward search running on @executor. Smaller reorderings stay on the calling thread.
+     * The graph must allow concurrent calls of forEachF() and forEachB(). Cycle contraction always searches sequentially.
+     * @param executor the executor for the forward search, or null to search sequentially.
+     * @param threshold the minimum distance between the indices of the source and the sink of a new edge.
+     */
+
+    public void parallelSearch(ExecutorService executor, int threshold) {
+        this.searchExecutor = executor;
+        this.parallelThreshold = threshold;
+    }
+
+    /**
+     * Lets this algorithm take its scratch state from the given supplier instead of using its own.
+     * The supplier must not hand out the same state to two threads at the same time.
+     */
+
+    void setScratch(Supplier<ExpansionState<N>> scratch) {
+        this.scratch = scratch;
+    }
+
     public void switchPositions(final Set<N> shiftUp, final Set<N> shiftDown) {
-        List<N> shiftUpSorted = sortByIndex(shiftUp);
-        List<N> shiftDownSorted = sortByIndex(shiftDown);
-        List<N> oldOrder = new ArrayList<>(shiftUpSorted);
-        oldOrder.addAll(new ArrayList<>(shiftDownSorted));
-        Collections.sort(oldOrder, new IndexComparator<N>(this.node2Index));
-        List<N> newOrder = new ArrayList<>(shiftDownSorted);
-        newOrder.addAll(shiftUpSorted);
-        HashMap<N, Integer> newNode2Index = new HashMap<N, Integer>();
+        switchPositions(shiftUp, shiftDown, new ExpansionState<N>());
+    }
+
+    private void switchPositions(final Set<N> shiftUp, final Set<N> shiftDown, ExpansionState<N> es) {
+        es.shiftUp.clear();
+        es.shiftDown.clear();
+        for (N n : shiftUp) {
+            es.shiftUp.put(n, this.node2Index.get(n));
+        }
+        for (N n : shiftDown) {
+            es.shiftDown.put(n, this.node2Index.get(n));
+        }
+        switchPositions(es);
+    }
+
+    /**
+     * Moves the nodes of es.shiftDown before the nodes of es.shiftUp, reusing the indices occupied by both.
+     * The relative order within each set is preserved.
+     *
+     * Both sets are sorted by index as packed (index << 32 | position) keys, which takes O(k log k) for k nodes.
+     * The expansion finds the nodes in priority order of their paths, not in index order, so they have to be
+     * sorted once; keeping the frontiers in index order instead would cost a logarithmic insertion per node as well.
+     * Since both sorted lists of indices are ascending, the combined list of slots is then obtained by merging them
+     * in O(k), instead of sorting their concatenation again, and the nodes are written to their slots directly.
+     */
+
+    private void switchPositions(ExpansionState<N> es) {
+        int up = es.shiftUp.size();
+        int down = es.shiftDown.size();
+        long[] upKeys = sortedKeys(es.shiftUp, es.shiftUpNodes, es.shiftUpKeys(up));
+        long[] downKeys = sortedKeys(es.shiftDown, es.shiftDownNodes, es.shiftDownKeys(down));
+        if (recorder != null) {
+            recorder.switched(es.shiftDownNodes);
+            recorder.switched(es.shiftUpNodes);
+        }
+        int[] slots = es.slots(up + down);
+        int u = 0;
+        int d = 0;
+        for (int i = 0; i < up + down; i++) {
+            if (d == down || (u < up && upKeys[u] < downKeys[d])) {
+                slots[i] = (int) (upKeys[u++] >> 32);
+            } else {
+                slots[i] = (int) (downKeys[d++] >> 32);
+            }
+        }
         int position = 0;
-        for (N n: oldOrder) {
-            int index = this.node2Index.get(n);
-            newNode2Index.put(newOrder.get(position), index);
-            position++;
+        for (d = 0; d < down; d++) {
+            this.put(es.shiftDownNodes.get((int) downKeys[d]), slots[position++]);
         }
-        for (N elem : newNode2Index.keySet()) {
-            this.put(elem, newNode2Index.get(elem));
+        for (u = 0; u < up; u++) {
+            this.put(es.shiftUpNodes.get((int) upKeys[u]), slots[position++]);
         }
     }
 
-}
+    private static <N> long[] sortedKeys(Map<N, Integer> indices, ArrayList<N> nodes, long[] keys) {
+        nodes.clear();
+        for (Map.Entry<N, Integer> entry : indices.entrySet()) {
+            if (entry.getValue() == null) {
+                throw new IllegalStateException("The expansion state has not been reset with the indices of its nodes.");
+            }
+            keys[nodes.size()] = ((long) entry.getValue() << 32) | nodes.size();
+            nodes.add(entry.getKey());
+        }
+        Arrays.sort(keys, 0, nodes.size());
+        return keys;
+    }
 
+}
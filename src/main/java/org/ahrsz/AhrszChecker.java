@@ -1,7 +1,14 @@
 package org.ahrsz;
 
+import java.util.Map;
+
 public class AhrszChecker {
 
+    /**
+     * Checks that every visible edge points from an earlier to a later node. Stored edges whose weight is
+     * too small to be visible are not ordered, see DirectedGraph.forEachF().
+     */
+
     public static <N extends Comparable<N>> void checkAhrsz(final AhrszAlgorithm<N> ahrsz)
             throws InvalidAhrszStateException {
         checkForward(ahrsz);
@@ -12,6 +19,7 @@ public class AhrszChecker {
             throws InvalidAhrszStateException {
         for (final N source : ahrsz.forwardKeys()) {
             for (final N sink : ahrsz.getF(source)) {
+                if (! ahrsz.directedGraph.hasEdge(source, sink)) continue;
                 if (ahrsz.node2Index.get(source) >= ahrsz.node2Index.get(sink))
                     throw new InvalidAhrszStateException();
             }
@@ -23,10 +31,82 @@ public class AhrszChecker {
             throws InvalidAhrszStateException {
         for (final N source : ahrsz.backwardKeys()) {
             for (final N sink : ahrsz.getB(source)) {
+                if (! ahrsz.directedGraph.hasEdge(sink, source)) continue;
                 if (ahrsz.node2Index.get(source) <= ahrsz.node2Index.get(sink))
                     throw new InvalidAhrszStateException();
             }
         }
     }
 
+    /**
+     * Checks all edges like checkAhrsz, but spreads the work over the common fork join pool.
+     * This is meant for offline audits of large graphs. The graph must not be modified during the check.
+     */
+
+    public static <N extends Comparable<N>> void checkAhrszParallel(final AhrszAlgorithm<N> ahrsz)
+            throws InvalidAhrszStateException {
+        final Map<N, Integer> node2Index = ahrsz.node2Index;
+        boolean forwardViolated = ahrsz.forwardKeys().parallelStream().anyMatch(
+                source -> ahrsz.getF(source).stream().anyMatch(
+                        sink -> ahrsz.directedGraph.hasEdge(source, sink)
+                                && node2Index.get(source) >= node2Index.get(sink)
+                )
+        );
+        if (forwardViolated) throw new InvalidAhrszStateException();
+        boolean backwardViolated = ahrsz.backwardKeys().parallelStream().anyMatch(
+                source -> ahrsz.getB(source).stream().anyMatch(
+                        sink -> ahrsz.directedGraph.hasEdge(sink, source)
+                                && node2Index.get(source) <= node2Index.get(sink)
+                )
+        );
+        if (backwardViolated) throw new InvalidAhrszStateException();
+    }
+
+    /**
+     * Checks only the edges that may have been affected by the last insertion: the edges of the endpoints
+     * of the inserted edge, and the edges of all nodes that were added or moved by it.
+     * If the order was valid before the insertion, this is sufficient to prove that it is still valid.
+     * The added and moved nodes are only known while checkEvery() or a delta listener is active; otherwise only the
+     * endpoints are checked.
+     * The check does not allocate when the graph returns its adjacency maps without copying, as HashMapGraph does.
+     */
+
+    public static <N extends Comparable<N>> void checkLastInsert(final AhrszAlgorithm<N> ahrsz)
+            throws InvalidAhrszStateException {
+        OrderDelta<N> delta = ahrsz.lastDelta();
+        if (ahrsz.lastFrom() == null) return;
+        checkNode(ahrsz, ahrsz.lastFrom());
+        checkNode(ahrsz, ahrsz.lastTo());
+        if (delta == null) return;
+        for (int i = 0; i < delta.addedCount(); i++) {
+            checkNode(ahrsz, delta.added(i));
+        }
+        for (int i = 0; i < delta.movedCount(); i++) {
+            checkNode(ahrsz, delta.moved(i));
+        }
+    }
+
+    private static <N extends Comparable<N>> void checkNode(final AhrszAlgorithm<N> ahrsz, final N node)
+            throws InvalidAhrszStateException {
+        Integer index = ahrsz.node2Index.get(node);
+        // the node has been contracted into a component.
+        if (index == null) return;
+        Map<N, Float> successors = ahrsz.directedGraph.getF(node);
+        if (successors != null) {
+            for (final N sink : successors.keySet()) {
+                if (! ahrsz.directedGraph.hasEdge(node, sink)) continue;
+                if (index >= ahrsz.node2Index.get(sink))
+                    throw new InvalidAhrszStateException();
+            }
+        }
+        Map<N, Float> predecessors = ahrsz.directedGraph.getB(node);
+        if (predecessors != null) {
+            for (final N source : predecessors.keySet()) {
+                if (! ahrsz.directedGraph.hasEdge(source, node)) continue;
+                if (index <= ahrsz.node2Index.get(source))
+                    throw new InvalidAhrszStateException();
+            }
+        }
+    }
+
 }
@@ -0,0 +1,217 @@
+package org.ahrsz;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Talks to an AhrszServer on the same host.
+ *
+ * The methods addEdge(), before(), rank(), probe() and flush() send a single request and wait for its response.
+ * For pipelining, requests are queued with the send methods, which write to the socket only when the output
+ * buffer is full, and the responses are then read in the same order with the receive methods, which first write
+ * any queued requests. Responses that are not received pile up in the socket buffers, and once these are full the
+ * server stops reading requests, so the number of outstanding requests should stay bounded, e.g. by a few thousand.
+ * A client must be used by one thread at a time.
+ *
+ * @param <N> the type of the nodes.
+ */
+
+public class AhrszClient<N extends Comparable<N>> implements AutoCloseable {
+
+    /**
+     * The answer to a probe: the version and the size of the snapshot the server answers reads from.
+     */
+
+    public static final class Probe {
+        public final long version;
+        public final int size;
+
+        Probe(long version, int size) {
+            this.version = version;
+            this.size = size;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final NodeCodec<N> codec;
+    private final SocketChannel channel;
+    private ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+
+    public AhrszClient(NodeCodec<N> codec, int port) throws IOException {
+        this.codec = codec;
+        this.channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        channel.socket().setTcpNoDelay(true);
+        ((Buffer) in).limit(0);
+    }
+
+    /**
+     * @return true if the server queued the edge, false if it was dropped.
+     */
+
+    public boolean addEdge(N from, N to, float weight) throws IOException {
+        sendAddEdge(from, to, weight);
+        return receiveAddEdge();
+    }
+
+    /**
+     * @return whether @n1 is before @n2, or null if either node is not ordered.
+     */
+
+    public Boolean before(N n1, N n2) throws IOException {
+        sendBefore(n1, n2);
+        return receiveBefore();
+    }
+
+    /**
+     * @return the number of nodes before @node, or -1 if the node is not ordered.
+     */
+
+    public int rank(N node) throws IOException {
+        sendRank(node);
+        return receiveRank();
+    }
+
+    public Probe probe() throws IOException {
+        sendProbe();
+        return receiveProbe();
+    }
+
+    /**
+     * Waits until the server has applied all edges queued so far, so that reads see them.
+     */
+
+    public void flush() throws IOException {
+        sendFlush();
+        receiveFlush();
+    }
+
+    public void sendAddEdge(N from, N to, float weight) throws IOException {
+        int start = out.position();
+        try {
+            out.put(AhrszServer.ADD_EDGE);
+            codec.write(from, out);
+            codec.write(to, out);
+            out.putFloat(weight);
+        } catch (BufferOverflowException e) {
+            ((Buffer) out).position(start);
+            makeRoom();
+            sendAddEdge(from, to, weight);
+        }
+    }
+
+    public void sendBefore(N n1, N n2) throws IOException {
+        int start = out.position();
+        try {
+            out.put(AhrszServer.BEFORE);
+            codec.write(n1, out);
+            codec.write(n2, out);
+        } catch (BufferOverflowException e) {
+            ((Buffer) out).position(start);
+            makeRoom();
+            sendBefore(n1, n2);
+        }
+    }
+
+    public void sendRank(N node) throws IOException {
+        int start = out.position();
+        try {
+            out.put(AhrszServer.RANK);
+            codec.write(node, out);
+        } catch (BufferOverflowException e) {
+            ((Buffer) out).position(start);
+            makeRoom();
+            sendRank(node);
+        }
+    }
+
+    public void sendProbe() throws IOException {
+        if (! out.hasRemaining()) makeRoom();
+        out.put(AhrszServer.PROBE);
+    }
+
+    public void sendFlush() throws IOException {
+        if (! out.hasRemaining()) makeRoom();
+        out.put(AhrszServer.FLUSH);
+    }
+
+    public boolean receiveAddEdge() throws IOException {
+        return status() == AhrszServer.OK;
+    }
+
+    public Boolean receiveBefore() throws IOException {
+        if (status() != AhrszServer.OK) return null;
+        return fill(1).get() == 1;
+    }
+
+    public int receiveRank() throws IOException {
+        if (status() != AhrszServer.OK) return -1;
+        return fill(4).getInt();
+    }
+
+    public Probe receiveProbe() throws IOException {
+        status();
+        ByteBuffer response = fill(12);
+        return new Probe(response.getLong(), response.getInt());
+    }
+
+    public void receiveFlush() throws IOException {
+        status();
+    }
+
+    /**
+     * Writes the queued requests, or, if there are none, doubles the buffer for a request that does not fit.
+     */
+
+    private void makeRoom() throws IOException {
+        if (out.position() > 0) {
+            send();
+        } else {
+            out = ByteBuffer.allocate(out.capacity() * 2);
+        }
+    }
+
+    private void send() throws IOException {
+        ((Buffer) out).flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        ((Buffer) out).clear();
+    }
+
+    private byte status() throws IOException {
+        byte status = fill(1).get();
+        if (status == AhrszServer.ERROR) throw new IOException("The server rejected the request.");
+        return status;
+    }
+
+    /**
+     * Writes the queued requests and reads until at least @bytes bytes of responses are available.
+     */
+
+    private ByteBuffer fill(int bytes) throws IOException {
+        if (out.position() > 0) send();
+        if (in.remaining() < bytes) {
+            in.compact();
+            while (in.position() < bytes) {
+                if (channel.read(in) < 0) throw new EOFException("The server closed the connection.");
+            }
+            ((Buffer) in).flip();
+        }
+        return in;
+    }
+
+    @Override
+    public void close() throws IOException {
+        send();
+        channel.close();
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.ahrsz;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Hosts many independent topological orders, for example one per tenant, within one JVM.
+ *
+ * All hosted algorithms share a NodeInterner, so a node known to many tenants is stored once. The interner holds
+ * its nodes weakly, so the nodes of a removed tenant are released once no other tenant refers to them.
+ * Reorderings take their scratch state from a thread local pool instead of each algorithm keeping its own, so idle
+ * tenants do not hold on to queues and sets. Operations on one tenant are synchronized on its algorithm; different
+ * tenants can be updated concurrently.
+ *
+ * @param <T> the type of the tenant keys.
+ * @param <N> the type of the nodes.
+ */
+
+public class AhrszRegistry<T, N extends Comparable<N>> {
+
+    /**
+     * rough sizes of the objects behind one node and one edge, assuming compressed oops:
+     * a HashMap entry, its share of the table, and the boxed value.
+     */
+    static final long NODE_BYTES = 56;
+    static final long EDGE_BYTES = 56;
+    static final long ADJACENCY_BYTES = 112;
+
+    private final Supplier<DirectedGraph<N>> graphFactory;
+    private final ConcurrentHashMap<T, AhrszAlgorithm<N>> algorithms = new ConcurrentHashMap<>();
+    private final NodeInterner<N> interner = new NodeInterner<>();
+    private final ThreadLocal<ExpansionState<N>> scratch = new ThreadLocal<ExpansionState<N>>() {
+        @Override
+        protected ExpansionState<N> initialValue() {
+            return new ExpansionState<>();
+        }
+    };
+
+    public AhrszRegistry() {
+        this(HashMapGraph::new);
+    }
+
+    /**
+     * @param graphFactory creates the graph for every new tenant.
+     */
+
+    public AhrszRegistry(Supplier<DirectedGraph<N>> graphFactory) {
+        this.graphFactory = graphFactory;
+    }
+
+    /**
+     * @return the algorithm of the tenant, which is created if it does not exist yet.
+     */
+
+    public AhrszAlgorithm<N> get(T tenant) {
+        return algorithms.computeIfAbsent(tenant, t -> {
+            AhrszAlgorithm<N> ahrsz = new AhrszAlgorithm<>(graphFactory.get());
+            ahrsz.setScratch(scratch::get);
+            return ahrsz;
+        });
+    }
+
+    public void addEdge(T tenant, N from, N to, float weight)
+            throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<N> ahrsz = get(tenant);
+        synchronized (ahrsz) {
+            ahrsz.addEdge(interner.intern(from), interner.intern(to), weight);
+        }
+    }
+
+    public boolean before(T tenant, N n1, N n2) {
+        AhrszAlgorithm<N> ahrsz = get(tenant);
+        synchronized (ahrsz) {
+            return ahrsz.before(n1, n2);
+        }
+    }
+
+    public void remove(T tenant) {
+        algorithms.remove(tenant);
+    }
+
+    public int size() {
+        return algorithms.size();
+    }
+
+    public NodeInterner<N> getInterner() {
+        return interner;
+    }
+
+    /**
+     * Estimates the heap memory used by the order and the graph of one tenant, and by the free slots, deltas and
+     * recorder its algorithm has allocated. Nodes are shared between tenants through the interner and are not counted.
+     * @return the estimated number of bytes, or 0 if the tenant does not exist.
+     */
+
+    public long memoryUsage(T tenant) {
+        AhrszAlgorithm<N> ahrsz = algorithms.get(tenant);
+        if (ahrsz == null) return 0;
+        synchronized (ahrsz) {
+            long nodes = ahrsz.node2Index.size();
+            long edges = 0;
+            long adjacencies = 0;
+            for (N source : ahrsz.forwardKeys()) {
+                edges += ahrsz.getF(source).size();
+                adjacencies++;
+            }
+            adjacencies += ahrsz.backwardKeys().size();
+            return nodes * NODE_BYTES + 2 * edges * EDGE_BYTES + adjacencies * ADJACENCY_BYTES
+                    + ahrsz.auxiliaryBytes();
+        }
+    }
+
+    /**
+     * @return the estimated memory usage of every tenant, see memoryUsage(T).
+     */
+
+    public Map<T, Long> memoryUsage() {
+        Map<T, Long> result = new HashMap<>();
+        for (T tenant : algorithms.keySet()) {
+            result.put(tenant, memoryUsage(tenant));
+        }
+        return result;
+    }
+
+}
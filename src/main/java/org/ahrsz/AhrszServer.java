@@ -0,0 +1,290 @@
+package org.ahrsz;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves one AhrszAlgorithm to several processes on the same host over a localhost TCP socket.
+ *
+ * Every request starts with an opcode byte, every response with a status byte. Nodes are written with a NodeCodec,
+ * weights as 4 byte floats:
+ *
+ * - ADD_EDGE from to weight: hands the edge to an EdgeIngestor. The response is OK once the edge is queued, or
+ *   DROPPED if the backpressure policy or the weight rejected it. The edge is visible to reads after the next batch.
+ * - BEFORE n1 n2: OK and a byte, 1 if n1 is before n2, or UNKNOWN if either node is not ordered.
+ * - RANK node: OK and the number of nodes before the node as an int, or UNKNOWN.
+ * - PROBE: OK, the version of the snapshot the reads are answered from as a long and its number of nodes as an int.
+ * - FLUSH: OK once all edges queued before, by any connection, are applied and visible to reads.
+ *
+ * If the writer thread of the EdgeIngestor has failed, ADD_EDGE and FLUSH are answered with ERROR and the connection
+ * is closed, like after an unknown opcode.
+ *
+ * Requests may be pipelined: a client can write many requests before reading any response. The responses of a
+ * connection are written in the order of its requests, collected into as few writes as the input allows.
+ *
+ * Inserts from all connections go through the single writer thread of the EdgeIngestor, which applies them in
+ * batches. After every batch the writer takes an OrderSnapshot, and all reads are answered from the latest one
+ * without taking a lock, so reads from different connections run concurrently with each other and with ingestion.
+ * Snapshots are not supported by contraction mode.
+ *
+ * Each connection is served by one task on the given executor, reading and writing through a blocking
+ * SocketChannel. Connections therefore cost one thread each, so a pool of virtual threads fits well where
+ * available.
+ *
+ * @param <N> the type of the nodes.
+ */
+
+public class AhrszServer<N extends Comparable<N>> implements AutoCloseable {
+
+    static final byte ADD_EDGE = 1;
+    static final byte BEFORE = 2;
+    static final byte RANK = 3;
+    static final byte PROBE = 4;
+    static final byte FLUSH = 5;
+
+    static final byte OK = 0;
+    static final byte DROPPED = 1;
+    static final byte UNKNOWN = 2;
+    static final byte ERROR = 3;
+
+    /**
+     * an upper bound for the size of a single response.
+     */
+    private static final int MAX_RESPONSE = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final AhrszAlgorithm<N> ahrsz;
+    private final NodeCodec<N> codec;
+    private final EdgeIngestor<N> ingestor;
+    private final ExecutorService connections;
+    private final ServerSocketChannel server;
+    private final Set<SocketChannel> clients = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+    private volatile OrderSnapshot<N> latest;
+    private volatile boolean running = true;
+
+    /**
+     * @param ahrsz the algorithm to serve, which must not be modified except through the server while it runs.
+     * @param codec writes and reads the nodes of requests and responses.
+     * @param port the localhost port to listen on, 0 for any free port.
+     * @param connections runs one task per connection.
+     * @param capacity the capacity of the EdgeIngestor, which is also its high watermark.
+     * @param backpressure what to do with inserts when the EdgeIngestor is full.
+     */
+
+    public AhrszServer(AhrszAlgorithm<N> ahrsz, NodeCodec<N> codec, int port, ExecutorService connections,
+                       int capacity, EdgeIngestor.Backpressure backpressure) throws IOException {
+        this.ahrsz = ahrsz;
+        this.codec = codec;
+        this.connections = connections;
+        synchronized (ahrsz) {
+            latest = ahrsz.snapshot();
+        }
+        this.ingestor = new EdgeIngestor<>(ahrsz, capacity, capacity, backpressure, 1024, 1, TimeUnit.MILLISECONDS);
+        ingestor.setBatchListener(() -> latest = ahrsz.snapshot());
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.acceptor = new Thread(this::accept, "ahrsz-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Creates a server with a blocking EdgeIngestor of capacity 65536.
+     */
+
+    public AhrszServer(AhrszAlgorithm<N> ahrsz, NodeCodec<N> codec, int port, ExecutorService connections)
+            throws IOException {
+        this(ahrsz, codec, port, connections, 1 << 16, EdgeIngestor.Backpressure.BLOCK);
+    }
+
+    /**
+     * @return the port the server listens on.
+     */
+
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @return the snapshot the reads are currently answered from.
+     */
+
+    public OrderSnapshot<N> snapshot() {
+        return latest;
+    }
+
+    public long droppedEdges() {
+        return ingestor.droppedEdges();
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones and applies the queued edges. The executor is not shut down.
+     */
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the acceptor thread.", e);
+        }
+        for (SocketChannel client : clients) {
+            client.close();
+        }
+        ingestor.close();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                SocketChannel client = server.accept();
+                client.socket().setTcpNoDelay(true);
+                clients.add(client);
+                connections.execute(() -> serve(client));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (! running) return;
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+        try {
+            while (client.read(in) >= 0) {
+                ((Buffer) in).flip();
+                boolean open = true;
+                while (open && in.hasRemaining()) {
+                    if (out.remaining() < MAX_RESPONSE) write(client, out);
+                    ((Buffer) in).mark();
+                    try {
+                        open = handle(in, out);
+                    } catch (BufferUnderflowException e) {
+                        // the rest of the request has not arrived yet.
+                        ((Buffer) in).reset();
+                        break;
+                    }
+                }
+                write(client, out);
+                if (! open) break;
+                if (in.position() == 0 && in.limit() == in.capacity()) {
+                    // a single request does not fit into the buffer.
+                    ByteBuffer larger = ByteBuffer.allocate(in.capacity() * 2);
+                    larger.put(in);
+                    in = larger;
+                } else {
+                    in.compact();
+                }
+            }
+        } catch (IOException e) {
+            // the client went away, or the server is closing.
+        } finally {
+            clients.remove(client);
+            try {
+                client.close();
+            } catch (IOException e) {
+                // nothing left to clean up.
+            }
+        }
+    }
+
+    private static void write(SocketChannel client, ByteBuffer out) throws IOException {
+        ((Buffer) out).flip();
+        while (out.hasRemaining()) {
+            client.write(out);
+        }
+        ((Buffer) out).clear();
+    }
+
+    /**
+     * Reads one complete request from @in and writes its response to @out. Nothing is done before the request has
+     * been read completely, so an incomplete request can be retried once more input has arrived.
+     * @return false if the connection is to be closed.
+     */
+
+    private boolean handle(ByteBuffer in, ByteBuffer out) {
+        byte opcode = in.get();
+        switch (opcode) {
+            case ADD_EDGE: {
+                N from = codec.read(in);
+                N to = codec.read(in);
+                float weight = in.getFloat();
+                byte status = insert(from, to, weight);
+                out.put(status);
+                return status != ERROR;
+            }
+            case BEFORE: {
+                N n1 = codec.read(in);
+                N n2 = codec.read(in);
+                OrderSnapshot<N> snapshot = latest;
+                Integer i1 = snapshot.index(n1);
+                Integer i2 = snapshot.index(n2);
+                if (i1 == null || i2 == null) {
+                    out.put(UNKNOWN);
+                } else {
+                    out.put(OK).put((byte) (i1 < i2 ? 1 : 0));
+                }
+                return true;
+            }
+            case RANK: {
+                int rank = latest.rank(codec.read(in));
+                if (rank < 0) {
+                    out.put(UNKNOWN);
+                } else {
+                    out.put(OK).putInt(rank);
+                }
+                return true;
+            }
+            case PROBE: {
+                OrderSnapshot<N> snapshot = latest;
+                out.put(OK).putLong(snapshot.version()).putInt(snapshot.size());
+                return true;
+            }
+            case FLUSH:
+                try {
+                    ingestor.flush();
+                } catch (IllegalStateException e) {
+                    out.put(ERROR);
+                    return false;
+                }
+                out.put(OK);
+                return true;
+            default:
+                out.put(ERROR);
+                return false;
+        }
+    }
+
+    /**
+     * @return the status of an ADD_EDGE request: ERROR if the ingestor no longer applies edges.
+     */
+
+    private byte insert(N from, N to, float weight) {
+        // rejects NaN as well.
+        if (! (weight >= 0f)) return DROPPED;
+        try {
+            return ingestor.offer(from, to, weight) ? OK : DROPPED;
+        } catch (IllegalStateException e) {
+            // with Backpressure.FAIL a full buffer throws as well, which only drops this edge.
+            return ingestor.isRunning() ? DROPPED : ERROR;
+        }
+    }
+
+}
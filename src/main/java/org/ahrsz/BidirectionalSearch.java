@@ -0,0 +1,145 @@
+package org.ahrsz;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Searches the region affected by a new edge from @from to @to with two workers running at the same time.
+ *
+ * The forward worker visits the nodes reachable from @to that are positioned before @from, the backward worker
+ * visits the nodes reaching @from that are positioned after @to. Both record the nodes they visit in a shared
+ * concurrent map, together with the node they were reached from. A worker that reaches a node already visited by
+ * the other worker has found a cycle through the new edge, and both workers stop.
+ *
+ * Every worker first marks a node and then looks for the mark of the other worker, so at least one of them
+ * notices when both reach the same node at the same time. The graph and the order are only read during the
+ * search, so the graph must allow concurrent calls of forEachF() and forEachB().
+ *
+ * @param <N> the type of the nodes.
+ */
+
+class BidirectionalSearch<N extends Comparable<N>> {
+
+    private final DirectedGraph<N> directedGraph;
+    private final Map<N, Integer> node2Index;
+    private final N from;
+    private final N to;
+
+    private final ConcurrentHashMap<N, N> forwardParents = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<N, N> backwardParents = new ConcurrentHashMap<>();
+    /**
+     * the edge (a, b) where the searches met: a was visited forward, b was visited backward.
+     */
+    private final AtomicReference<List<N>> meeting = new AtomicReference<>();
+
+    BidirectionalSearch(DirectedGraph<N> directedGraph, Map<N, Integer> node2Index, N from, N to) {
+        this.directedGraph = directedGraph;
+        this.node2Index = node2Index;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Runs the forward search on the executor and the backward search on the calling thread.
+     * @return true if the searches met, which means that the new edge closes a cycle.
+     */
+
+    boolean run(ExecutorService executor) {
+        forwardParents.put(to, to);
+        backwardParents.put(from, from);
+        Future<?> forward = executor.submit(() -> search(true));
+        search(false);
+        try {
+            forward.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return meeting.get() != null;
+    }
+
+    private void search(boolean forward) {
+        ConcurrentHashMap<N, N> own = forward ? forwardParents : backwardParents;
+        ConcurrentHashMap<N, N> other = forward ? backwardParents : forwardParents;
+        int bound = forward ? node2Index.get(from) : node2Index.get(to);
+        ArrayDeque<N> stack = new ArrayDeque<>();
+        List<N> neighbours = new ArrayList<>();
+        EdgeVisitor<N> collector = (next, weight) -> neighbours.add(next);
+        stack.push(forward ? to : from);
+        while (! stack.isEmpty() && meeting.get() == null) {
+            N node = stack.pop();
+            neighbours.clear();
+            if (forward) {
+                directedGraph.forEachF(node, collector);
+            } else {
+                directedGraph.forEachB(node, collector);
+            }
+            for (N next : neighbours) {
+                int index = node2Index.get(next);
+                if (forward ? index < bound : index > bound) {
+                    if (own.putIfAbsent(next, node) == null) stack.push(next);
+                }
+                if (other.containsKey(next)) {
+                    meeting.compareAndSet(null, forward ? pair(node, next) : pair(next, node));
+                    return;
+                }
+            }
+        }
+    }
+
+    private List<N> pair(N a, N b) {
+        List<N> pair = new ArrayList<>(2);
+        pair.add(a);
+        pair.add(b);
+        return pair;
+    }
+
+    /**
+     * @return the cycle found by the searches, starting with @to and ending with @from.
+     */
+
+    List<N> cycle() {
+        List<N> cycle = new ArrayList<>();
+        N a = meeting.get().get(0);
+        N b = meeting.get().get(1);
+        for (N node = a; ; node = forwardParents.get(node)) {
+            cycle.add(node);
+            if (node.equals(to)) break;
+        }
+        Collections.reverse(cycle);
+        // a is never @from, since @from is only visited backward.
+        for (N node = a.equals(b) ? backwardParents.get(b) : b; ; node = backwardParents.get(node)) {
+            cycle.add(node);
+            if (node.equals(from)) break;
+        }
+        return cycle;
+    }
+
+    /**
+     * @return the nodes found by the forward search, including @to.
+     */
+
+    Set<N> forwardRegion() {
+        return forwardParents.keySet();
+    }
+
+    /**
+     * @return the nodes found by the backward search, including @from.
+     */
+
+    Set<N> backwardRegion() {
+        return backwardParents.keySet();
+    }
+
+}
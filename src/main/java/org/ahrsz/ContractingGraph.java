@@ -0,0 +1,231 @@
+package org.ahrsz;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A view on a directed graph in which cycles are contracted instead of being removed.
+ *
+ * The nodes of a contracted cycle form a component that is represented by a single node, its representative.
+ * All methods of this view work on representatives: the outgoing edges of a representative are the edges of
+ * all members of its component that leave the component, with their weights summed up per target component.
+ * Edges within a component are kept in the underlying graph, but are invisible in this view.
+ *
+ * Components are kept in a union-find structure in which every member points directly at its representative.
+ * When two components are merged, the members of the smaller one are relabelled, so that find() is a single lookup.
+ */
+
+public class ContractingGraph<N extends Comparable<N>> implements DirectedGraph<N> {
+
+    private final DirectedGraph<N> graph;
+    /**
+     * maps every member of a component with more than one node to its representative.
+     */
+    private final HashMap<N, N> representative;
+    /**
+     * maps the representative of every component with more than one node to all its members.
+     */
+    private final HashMap<N, List<N>> members;
+
+    public ContractingGraph(DirectedGraph<N> graph) {
+        this.graph = graph;
+        this.representative = new HashMap<>();
+        this.members = new HashMap<>();
+    }
+
+    public DirectedGraph<N> getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the representative of the component of node.
+     */
+
+    public N find(N node) {
+        N result = representative.get(node);
+        return result == null ? node : result;
+    }
+
+    /**
+     * @return all members of the component represented by rep.
+     */
+
+    public Collection<N> members(N rep) {
+        List<N> result = members.get(rep);
+        return result == null ? Collections.singletonList(rep) : result;
+    }
+
+    /**
+     * Merges all components of the given nodes into one.
+     * @return the representative of the merged component.
+     */
+
+    public N contract(Collection<N> nodes) {
+        N rep = null;
+        for (N node : nodes) {
+            N candidate = find(node);
+            if (rep == null || members(candidate).size() > members(rep).size()) rep = candidate;
+        }
+        List<N> repMembers = members.get(rep);
+        if (repMembers == null) {
+            repMembers = new ArrayList<>();
+            repMembers.add(rep);
+            representative.put(rep, rep);
+        }
+        for (N node : nodes) {
+            N other = find(node);
+            if (other.equals(rep)) continue;
+            for (N member : members(other)) {
+                representative.put(member, rep);
+                repMembers.add(member);
+            }
+            members.remove(other);
+        }
+        members.put(rep, repMembers);
+        return rep;
+    }
+
+    /**
+     * Removes node from its component.
+     * @return the representative of the rest of the component, or null if node was alone in its component.
+     */
+
+    public N detach(N node) {
+        N rep = find(node);
+        List<N> repMembers = members.remove(rep);
+        if (repMembers == null) return null;
+        repMembers.remove(node);
+        representative.remove(node);
+        N newRep = rep.equals(node) ? repMembers.get(0) : rep;
+        if (repMembers.size() == 1) {
+            representative.remove(newRep);
+            return newRep;
+        }
+        for (N member : repMembers) {
+            representative.put(member, newRep);
+        }
+        members.put(newRep, repMembers);
+        return newRep;
+    }
+
+    private HashMap<N, Float> external(N rep, boolean forward) {
+        HashMap<N, Float> result = new HashMap<>();
+        for (N member : members(rep)) {
+            HashMap<N, Float> edges = forward ? graph.getF(member) : graph.getB(member);
+            if (edges == null) continue;
+            for (Map.Entry<N, Float> edge : edges.entrySet()) {
+                N other = find(edge.getKey());
+                if (other.equals(rep)) continue;
+                Float weight = result.get(other);
+                result.put(other, weight == null ? edge.getValue() : weight + edge.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * This method returns all outgoing edges of a component together with their summed weights.
+     */
+
+    @Override
+    public HashMap<N, Float> getF(N key) {
+        return external(find(key), true);
+    }
+
+    @Override
+    public HashMap<N, Float> getB(N key) {
+        return external(find(key), false);
+    }
+
+    /**
+     * Passes the summed edges of the component to the visitor, without checking each of them with hasEdge().
+     */
+
+    @Override
+    public void forEachF(N key, EdgeVisitor<N> visitor) {
+        N rep = find(key);
+        for (Map.Entry<N, Float> edge : external(rep, true).entrySet()) {
+            visitor.visit(edge.getKey(), edge.getValue());
+        }
+    }
+
+    @Override
+    public void forEachB(N key, EdgeVisitor<N> visitor) {
+        N rep = find(key);
+        for (Map.Entry<N, Float> edge : external(rep, false).entrySet()) {
+            visitor.visit(edge.getKey(), edge.getValue());
+        }
+    }
+
+    @Override
+    public void addEdge(N from, N to, float weight) {
+        graph.addEdge(from, to, weight);
+    }
+
+    /**
+     * Contracts the cycle into a single component. The weights of the edges are left untouched.
+     * @param cycle the cycle to be contracted.
+     */
+
+    @Override
+    public void removeCycle(List<N> cycle) {
+        contract(cycle);
+    }
+
+    /**
+     * returns true if and only if there is an edge from a member of the component of @from
+     * to a member of a different component @to.
+     */
+
+    @Override
+    public boolean hasEdge(N from, N to) {
+        N fromRep = find(from);
+        N toRep = find(to);
+        if (fromRep.equals(toRep)) return false;
+        for (N member : members(fromRep)) {
+            HashMap<N, Float> edges = graph.getF(member);
+            if (edges == null) continue;
+            for (N sink : edges.keySet()) {
+                if (find(sink).equals(toRep) && graph.hasEdge(member, sink)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the node from its component and from the underlying graph.
+     */
+
+    @Override
+    public void removeNode(N node) {
+        detach(node);
+        graph.removeNode(node);
+    }
+
+    private Set<N> keys(Set<N> candidates, boolean forward) {
+        Set<N> result = new HashSet<>();
+        for (N candidate : candidates) {
+            N rep = find(candidate);
+            if (! result.contains(rep) && ! external(rep, forward).isEmpty()) result.add(rep);
+        }
+        return result;
+    }
+
+    @Override
+    public Set<N> getForwardKeys() {
+        return keys(graph.getForwardKeys(), true);
+    }
+
+    @Override
+    public Set<N> getBackwardKeys() {
+        return keys(graph.getBackwardKeys(), false);
+    }
+
+}
@@ -0,0 +1,38 @@
+package org.ahrsz;
+
+/**
+ * A Decay computes how much of an edge weight is left after some time has elapsed since it was last updated.
+ * Decays are used by DecayingHashMapGraph to let old observations fade away.
+ */
+
+public interface Decay {
+
+    /**
+     * @param weight the weight at the time of the last update.
+     * @param elapsed the time elapsed since the last update, in the unit of the clock of the graph.
+     * @return the remaining weight. This must never be larger than weight.
+     */
+
+    float apply(float weight, long elapsed);
+
+    /**
+     * Exponential decay, the weight halves every halfLife time units. A negative elapsed time, as produced by a
+     * clock that went backwards, counts as no time at all.
+     */
+
+    static Decay exponential(long halfLife) {
+        if (halfLife <= 0) throw new RuntimeException("The half life must be positive.");
+        final double lambda = Math.log(2) / halfLife;
+        return (weight, elapsed) -> (float) (weight * Math.exp(-lambda * Math.max(0L, elapsed)));
+    }
+
+    /**
+     * Sliding window expiry, the weight is kept unchanged for length time units and then drops to zero.
+     */
+
+    static Decay window(long length) {
+        if (length <= 0) throw new RuntimeException("The window length must be positive.");
+        return (weight, elapsed) -> elapsed < length ? weight : 0f;
+    }
+
+}
@@ -0,0 +1,347 @@
+package org.ahrsz;
+
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A directed graph whose edge weights fade over time.
+ *
+ * Every edge remembers its weight and the time of its last update. The current weight is computed lazily
+ * with a Decay whenever the edge is read, and edges with a current weight of at most minWeight are invisible.
+ * Since decaying only ever removes edges, it never invalidates a topological order, so no reordering is required.
+ *
+ * Invisible edges still occupy memory until they are swept. sweep() deletes them, together with the nodes that
+ * are left without any edges. sweep(ahrsz) also removes these nodes from the algorithm ordering the graph, which
+ * otherwise keeps their indices forever. A sweeper can be started in the background with startSweeper(); for this
+ * reason all methods of this class are synchronized.
+ *
+ * Only sweep(ahrsz) and the sweeper started with an algorithm keep the order consistent with the graph. sweep() and
+ * startSweeper(executor, ...) neither remove the swept nodes from the order nor hold the monitor of the algorithm,
+ * so they are only suitable for a graph that no algorithm orders, or while no insertion can run.
+ */
+
+public class DecayingHashMapGraph<N extends Comparable<N>> implements DirectedGraph<N> {
+
+    static class Edge {
+        float weight;
+        long time;
+
+        Edge(float weight, long time) {
+            this.weight = weight;
+            this.time = time;
+        }
+    }
+
+    private final HashMap<N, HashMap<N, Edge>> forward;
+    private final HashMap<N, HashMap<N, Edge>> backward;
+
+    private final Decay decay;
+    private final float minWeight;
+    private final LongSupplier clock;
+
+    public DecayingHashMapGraph(Decay decay, float minWeight) {
+        this(decay, minWeight, System::currentTimeMillis);
+    }
+
+    /**
+     * @param decay the decay that is applied to the weights.
+     * @param minWeight edges with a current weight of at most minWeight are not visible.
+     * @param clock the clock used to timestamp updates, in the time unit expected by decay.
+     */
+
+    public DecayingHashMapGraph(Decay decay, float minWeight, LongSupplier clock) {
+        this.decay = decay;
+        this.minWeight = minWeight;
+        this.clock = clock;
+        this.forward = new HashMap<>();
+        this.backward = new HashMap<>();
+    }
+
+    private float current(Edge edge, long now) {
+        return decay.apply(edge.weight, now - edge.time);
+    }
+
+    private boolean visible(float weight) {
+        return weight > minWeight && ! FloatUtils.floatEqual(weight, 0f);
+    }
+
+    private HashMap<N, Float> visibleEdges(HashMap<N, Edge> candidates) {
+        HashMap<N, Float> result = new HashMap<>();
+        if (candidates == null) return result;
+        long now = clock.getAsLong();
+        for (Map.Entry<N, Edge> entry : candidates.entrySet()) {
+            float weight = current(entry.getValue(), now);
+            if (visible(weight)) result.put(entry.getKey(), weight);
+        }
+        return result;
+    }
+
+    /**
+     * This method returns all visible outgoing edges together with their current weights for a given node.
+     */
+
+    @Override
+    public synchronized HashMap<N, Float> getF(N key) {
+        return visibleEdges(this.forward.get(key));
+    }
+
+    @Override
+    public synchronized HashMap<N, Float> getB(N key) {
+        return visibleEdges(this.backward.get(key));
+    }
+
+    /**
+     * Passes every visible outgoing edge of @key to the visitor with its current weight, decaying each weight once.
+     * The visitor is called while holding the monitor of this graph.
+     */
+
+    @Override
+    public synchronized void forEachF(N key, EdgeVisitor<N> visitor) {
+        visit(this.forward.get(key), visitor);
+    }
+
+    @Override
+    public synchronized void forEachB(N key, EdgeVisitor<N> visitor) {
+        visit(this.backward.get(key), visitor);
+    }
+
+    private void visit(HashMap<N, Edge> candidates, EdgeVisitor<N> visitor) {
+        if (candidates == null) return;
+        long now = clock.getAsLong();
+        for (Map.Entry<N, Edge> entry : candidates.entrySet()) {
+            float weight = current(entry.getValue(), now);
+            if (visible(weight)) visitor.visit(entry.getKey(), weight);
+        }
+    }
+
+    /**
+     * Adds weight to the edge from @from to @to. The weight accumulated so far is decayed up to now first.
+     */
+
+    @Override
+    public synchronized void addEdge(N from, N to, float weight) {
+        if (weight < 0f) throw new RuntimeException("Negative weights are not supported.");
+        long now = clock.getAsLong();
+        HashMap<N, Edge> outgoing = forward.get(from);
+        if (outgoing == null) {
+            outgoing = new HashMap<>();
+            forward.put(from, outgoing);
+        }
+        Edge edge = outgoing.get(to);
+        if (edge != null) {
+            edge.weight = current(edge, now) + weight;
+            edge.time = now;
+            return;
+        }
+        edge = new Edge(weight, now);
+        outgoing.put(to, edge);
+        HashMap<N, Edge> incoming = backward.get(to);
+        if (incoming == null) {
+            incoming = new HashMap<>();
+            backward.put(to, incoming);
+        }
+        incoming.put(from, edge);
+    }
+
+    /**
+     * Removes a cycle from the directed graph by decreasing the current weight of each edge of the cycle
+     * by the minimum current weight within the cycle.
+     * @param cycle the cycle to be removed.
+     */
+
+    @Override
+    public synchronized void removeCycle(List<N> cycle) {
+        long now = clock.getAsLong();
+        float minWeight = currentWeight(cycle.get(cycle.size() - 1), cycle.get(0), now);
+        for (int i = 0; i < cycle.size() - 1; i++) {
+            float weight = currentWeight(cycle.get(i), cycle.get(i + 1), now);
+            if (weight < minWeight) {
+                minWeight = weight;
+            }
+        }
+        // an edge of the cycle may have been swept in the meantime, in which case the cycle is already gone.
+        if (minWeight == 0f) return;
+        decreaseEdge(cycle.get(cycle.size() - 1), cycle.get(0), minWeight, now);
+        for (int i = 0; i < cycle.size() - 1; i++) {
+            decreaseEdge(cycle.get(i), cycle.get(i + 1), minWeight, now);
+        }
+    }
+
+    private float currentWeight(N from, N to, long now) {
+        HashMap<N, Edge> outgoing = forward.get(from);
+        if (outgoing == null || ! outgoing.containsKey(to)) return 0f;
+        return current(outgoing.get(to), now);
+    }
+
+    private void decreaseEdge(N from, N to, float decrement, long now) {
+        Edge edge = forward.get(from).get(to);
+        float weight = current(edge, now) - decrement;
+        if (visible(weight)) {
+            edge.weight = weight;
+            edge.time = now;
+        } else {
+            removeEdge(from, to);
+        }
+    }
+
+    private void removeEdge(N from, N to) {
+        forward.get(from).remove(to);
+        if (forward.get(from).isEmpty()) forward.remove(from);
+        backward.get(to).remove(from);
+        if (backward.get(to).isEmpty()) backward.remove(to);
+    }
+
+    /**
+     * returns true if and only if there is an edge from node @from to node @to with a current weight
+     * greater than minWeight.
+     */
+
+    @Override
+    public synchronized boolean hasEdge(N from, N to) {
+        if (! this.forward.containsKey(from)) return false;
+        Edge edge = this.forward.get(from).get(to);
+        if (edge == null) return false;
+        return visible(current(edge, clock.getAsLong()));
+    }
+
+    @Override
+    public synchronized void removeNode(N node) {
+        HashMap<N, Edge> outgoing = forward.remove(node);
+        if (outgoing != null) {
+            for (N successor : outgoing.keySet()) {
+                backward.get(successor).remove(node);
+                if (backward.get(successor).isEmpty()) backward.remove(successor);
+            }
+        }
+        HashMap<N, Edge> incoming = backward.remove(node);
+        if (incoming != null) {
+            for (N predecessor : incoming.keySet()) {
+                forward.get(predecessor).remove(node);
+                if (forward.get(predecessor).isEmpty()) forward.remove(predecessor);
+            }
+        }
+    }
+
+    private Set<N> keysWithVisibleEdges(HashMap<N, HashMap<N, Edge>> adjacency) {
+        long now = clock.getAsLong();
+        Set<N> result = new HashSet<>();
+        for (Map.Entry<N, HashMap<N, Edge>> entry : adjacency.entrySet()) {
+            for (Edge edge : entry.getValue().values()) {
+                if (visible(current(edge, now))) {
+                    result.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Set<N> getForwardKeys() {
+        return keysWithVisibleEdges(this.forward);
+    }
+
+    @Override
+    public synchronized Set<N> getBackwardKeys() {
+        return keysWithVisibleEdges(this.backward);
+    }
+
+    /**
+     * Deletes all edges that have decayed to minWeight or below, and all nodes that are left without edges.
+     * The nodes stay in the order of an algorithm ordering this graph, use sweep(ahrsz) in that case.
+     * @return the number of deleted edges.
+     */
+
+    public synchronized int sweep() {
+        return sweep(new HashSet<N>());
+    }
+
+    /**
+     * Deletes all edges that have decayed to minWeight or below, and removes the nodes that are left without edges
+     * from the graph and from @ahrsz, which must be the algorithm ordering this graph. Holds the monitor of
+     * @ahrsz while sweeping, so it may run concurrently with an EdgeIngestor.
+     * @return the number of deleted edges.
+     */
+
+    public int sweep(AhrszAlgorithm<N> ahrsz) {
+        synchronized (ahrsz) {
+            synchronized (this) {
+                Set<N> endpoints = new HashSet<>();
+                int removed = sweep(endpoints);
+                for (N node : endpoints) {
+                    if (! forward.containsKey(node) && ! backward.containsKey(node)) ahrsz.removeNode(node);
+                }
+                return removed;
+            }
+        }
+    }
+
+    /**
+     * Deletes the decayed edges and collects their endpoints in @endpoints.
+     */
+
+    private int sweep(Set<N> endpoints) {
+        long now = clock.getAsLong();
+        int removed = 0;
+        Iterator<Map.Entry<N, HashMap<N, Edge>>> sources = forward.entrySet().iterator();
+        while (sources.hasNext()) {
+            Map.Entry<N, HashMap<N, Edge>> source = sources.next();
+            Iterator<Map.Entry<N, Edge>> sinks = source.getValue().entrySet().iterator();
+            while (sinks.hasNext()) {
+                Map.Entry<N, Edge> sink = sinks.next();
+                if (visible(current(sink.getValue(), now))) continue;
+                sinks.remove();
+                endpoints.add(source.getKey());
+                endpoints.add(sink.getKey());
+                HashMap<N, Edge> incoming = backward.get(sink.getKey());
+                incoming.remove(source.getKey());
+                if (incoming.isEmpty()) backward.remove(sink.getKey());
+                removed++;
+            }
+            if (source.getValue().isEmpty()) sources.remove();
+        }
+        return removed;
+    }
+
+    /**
+     * Runs sweep() periodically on the given executor. Like sweep(), this does not keep the order of an algorithm
+     * consistent, use startSweeper(ahrsz, ...) for a graph that is ordered.
+     * @return the future of the scheduled task, which can be used to stop the sweeper.
+     */
+
+    public ScheduledFuture<?> startSweeper(ScheduledExecutorService executor, long period, TimeUnit unit) {
+        return executor.scheduleAtFixedRate(this::sweep, period, period, unit);
+    }
+
+    /**
+     * Runs sweep(ahrsz) periodically on the given executor, so that swept nodes also leave the order.
+     * @return the future of the scheduled task, which can be used to stop the sweeper.
+     */
+
+    public ScheduledFuture<?> startSweeper(AhrszAlgorithm<N> ahrsz, ScheduledExecutorService executor,
+                                           long period, TimeUnit unit) {
+        return executor.scheduleAtFixedRate(() -> sweep(ahrsz), period, period, unit);
+    }
+
+    /**
+     * @return the number of stored edges, including decayed edges that have not been swept yet.
+     */
+
+    public synchronized int storedEdges() {
+        int result = 0;
+        for (HashMap<N, Edge> outgoing : forward.values()) {
+            result += outgoing.size();
+        }
+        return result;
+    }
+
+}
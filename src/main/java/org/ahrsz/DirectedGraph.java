@@ -2,6 +2,7 @@ package org.ahrsz;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface DirectedGraph<N extends Comparable<N>> {
@@ -16,6 +17,50 @@ public interface DirectedGraph<N extends Comparable<N>> {
 
     boolean hasEdge(N from, N to);
 
+    /**
+     * Removes the node together with all its incoming and outgoing edges. Graphs that do not support removal keep
+     * this default, which throws an UnsupportedOperationException.
+     */
+
+    default void removeNode(N node) {
+        throw new UnsupportedOperationException("This graph does not support removing nodes.");
+    }
+
+    /**
+     * Passes every visible outgoing edge of @key to the visitor, without building a map of the edges
+     * where the graph can avoid it.
+     */
+
+    default void forEachF(N key, EdgeVisitor<N> visitor) {
+        Map<N, Float> edges = getF(key);
+        if (edges == null) return;
+        for (Map.Entry<N, Float> edge : edges.entrySet()) {
+            if (hasEdge(key, edge.getKey())) visitor.visit(edge.getKey(), edge.getValue());
+        }
+    }
+
+    /**
+     * Passes every visible incoming edge of @key to the visitor, see forEachF().
+     */
+
+    default void forEachB(N key, EdgeVisitor<N> visitor) {
+        Map<N, Float> edges = getB(key);
+        if (edges == null) return;
+        for (Map.Entry<N, Float> edge : edges.entrySet()) {
+            if (hasEdge(edge.getKey(), key)) visitor.visit(edge.getKey(), edge.getValue());
+        }
+    }
+
+    /**
+     * @return the weight of the edge from @from to @to if it is visible, null otherwise.
+     */
+
+    default Float getWeight(N from, N to) {
+        if (! hasEdge(from, to)) return null;
+        Map<N, Float> edges = getF(from);
+        return edges == null ? null : edges.get(to);
+    }
+
     Set<N> getForwardKeys();
 
     Set<N> getBackwardKeys();
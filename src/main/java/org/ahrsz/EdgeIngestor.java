@@ -0,0 +1,310 @@
+package org.ahrsz;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds edges from many producer threads into a single AhrszAlgorithm.
+ *
+ * Producers put edges into a preallocated ring buffer without taking a lock. A single writer thread drains the
+ * buffer in batches. Within a batch, repeated edges are merged by adding up their weights, so that every distinct
+ * edge is inserted only once per batch. Each batch is applied while holding the monitor of the algorithm, so
+ * readers that synchronize on the algorithm see the order between batches.
+ *
+ * The high watermark limits how many edges may wait in the buffer. What happens to a producer that finds the
+ * buffer at the watermark is decided by the Backpressure policy.
+ *
+ * @param <N> the type of the nodes.
+ */
+
+public class EdgeIngestor<N extends Comparable<N>> implements AutoCloseable {
+
+    public enum Backpressure {
+        /** the producer waits until the writer has made room. */
+        BLOCK,
+        /** the edge is dropped, and offer() returns false. */
+        DROP,
+        /** offer() throws an IllegalStateException. */
+        FAIL
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final AhrszAlgorithm<N> ahrsz;
+    private final Backpressure backpressure;
+    private final int highWatermark;
+    private final int batchSize;
+    private final long windowNanos;
+
+    private final int mask;
+    private final Object[] sources;
+    private final Object[] sinks;
+    private final float[] weights;
+    /**
+     * holds sequence + 1 for every slot once the edge with that sequence has been written to the slot.
+     */
+    private final AtomicLongArray published;
+    /**
+     * the next sequence to be claimed by a producer.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+    /**
+     * all sequences below consumed have been applied, and their slots may be reused.
+     */
+    private volatile long consumed;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long coalesced;
+
+    private volatile Runnable batchListener;
+    /**
+     * set by the writer before it parks on an empty buffer, so that producers know they have to wake it up.
+     */
+    private volatile boolean sleeping;
+
+    private final Thread writer;
+    private volatile boolean running;
+    private volatile Exception failure;
+
+    /**
+     * @param ahrsz the algorithm to insert the edges into.
+     * @param capacity the size of the ring buffer, rounded up to a power of two.
+     * @param highWatermark the maximum number of edges waiting in the buffer, at most capacity.
+     * @param backpressure what to do when the buffer is at the high watermark.
+     * @param batchSize the maximum number of edges drained and merged in one batch.
+     * @param window how long the writer waits for a batch to fill up before applying it.
+     */
+
+    public EdgeIngestor(AhrszAlgorithm<N> ahrsz, int capacity, int highWatermark, Backpressure backpressure,
+                        int batchSize, long window, TimeUnit unit) {
+        if (capacity <= 0) throw new IllegalArgumentException("The capacity must be positive.");
+        if (batchSize <= 0) throw new IllegalArgumentException("The batch size must be positive.");
+        if (window <= 0) throw new IllegalArgumentException("The window must be positive.");
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        if (highWatermark <= 0 || highWatermark > size) {
+            throw new IllegalArgumentException("The high watermark must be between 1 and the capacity.");
+        }
+        this.ahrsz = ahrsz;
+        this.backpressure = backpressure;
+        this.highWatermark = highWatermark;
+        this.batchSize = batchSize;
+        this.windowNanos = unit.toNanos(window);
+        this.mask = size - 1;
+        this.sources = new Object[size];
+        this.sinks = new Object[size];
+        this.weights = new float[size];
+        this.published = new AtomicLongArray(size);
+        this.running = true;
+        this.writer = new Thread(this::write, "ahrsz-ingestor");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public EdgeIngestor(AhrszAlgorithm<N> ahrsz, int capacity) {
+        this(ahrsz, capacity, capacity, Backpressure.BLOCK, 1024, 1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hands an edge to the writer thread. This method may be called from any thread.
+     * @return true if the edge was accepted, false if it was dropped because the buffer is full.
+     * @throws IllegalArgumentException if one of the endpoints is null, which would only fail later on the writer.
+     */
+
+    public boolean offer(N from, N to, float weight) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("The endpoints of an edge must not be null.");
+        }
+        if (weight < 0f) throw new RuntimeException("Negative weights are not supported.");
+        while (true) {
+            checkFailure();
+            if (! running) throw new IllegalStateException("The ingestor has been closed.");
+            long sequence = claimed.get();
+            if (sequence - consumed >= highWatermark) {
+                switch (backpressure) {
+                    case DROP:
+                        dropped.incrementAndGet();
+                        return false;
+                    case FAIL:
+                        throw new IllegalStateException("The ingestion buffer is full.");
+                    default:
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                        continue;
+                }
+            }
+            if (! claimed.compareAndSet(sequence, sequence + 1)) continue;
+            int slot = (int) (sequence & mask);
+            sources[slot] = from;
+            sinks[slot] = to;
+            weights[slot] = weight;
+            published.set(slot, sequence + 1);
+            if (sleeping) LockSupport.unpark(writer);
+            return true;
+        }
+    }
+
+    /**
+     * Waits until all edges offered before this call have been applied.
+     */
+
+    public void flush() {
+        long target = claimed.get();
+        while (consumed < target) {
+            checkFailure();
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        checkFailure();
+    }
+
+    /**
+     * Applies the remaining edges and stops the writer thread. Producers must have stopped offering edges.
+     */
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the writer thread.", e);
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (failure != null) throw new IllegalStateException("The writer thread failed.", failure);
+    }
+
+    /**
+     * Registers a listener that the writer thread runs after every applied batch, while still holding the monitor
+     * of the algorithm. AhrszServer uses it to take a snapshot for its readers.
+     */
+
+    public void setBatchListener(Runnable batchListener) {
+        this.batchListener = batchListener;
+    }
+
+    public long droppedEdges() {
+        return dropped.get();
+    }
+
+    /**
+     * @return false once the ingestor has been closed or its writer thread has failed.
+     */
+
+    public boolean isRunning() {
+        return running && failure == null;
+    }
+
+    /**
+     * @return the number of edges that were merged into another edge of the same batch.
+     */
+
+    public long coalescedEdges() {
+        return coalesced;
+    }
+
+    private static final class EdgeKey {
+        final Object from;
+        final Object to;
+
+        EdgeKey(Object from, Object to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (! (other instanceof EdgeKey)) return false;
+            EdgeKey o = (EdgeKey) other;
+            return from.equals(o.from) && to.equals(o.to);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * from.hashCode() + to.hashCode();
+        }
+    }
+
+    private void write() {
+        HashMap<EdgeKey, Integer> positions = new HashMap<>();
+        ArrayList<EdgeKey> batch = new ArrayList<>(batchSize);
+        float[] batchWeights = new float[batchSize];
+        while (running || consumed < claimed.get()) {
+            long next = consumed;
+            long deadline = 0;
+            int drained = 0;
+            while (drained < batchSize) {
+                int slot = (int) (next & mask);
+                if (published.get(slot) != next + 1) {
+                    // nothing more to drain: stop when closing, or when the window of the batch is over.
+                    if (! running && next >= claimed.get()) break;
+                    if (drained == 0) {
+                        idle(slot, next);
+                    } else {
+                        if (System.nanoTime() - deadline >= 0) break;
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                    continue;
+                }
+                if (drained == 0) deadline = System.nanoTime() + windowNanos;
+                EdgeKey key = new EdgeKey(sources[slot], sinks[slot]);
+                sources[slot] = null;
+                sinks[slot] = null;
+                Integer position = positions.get(key);
+                if (position == null) {
+                    positions.put(key, batch.size());
+                    batchWeights[batch.size()] = weights[slot];
+                    batch.add(key);
+                } else {
+                    batchWeights[position] += weights[slot];
+                    coalesced++;
+                }
+                next++;
+                drained++;
+            }
+            if (drained == 0) continue;
+            try {
+                apply(batch, batchWeights);
+            } catch (Exception e) {
+                failure = e;
+                running = false;
+                return;
+            }
+            positions.clear();
+            batch.clear();
+            consumed = next;
+        }
+    }
+
+    /**
+     * Parks the writer until a producer publishes the edge with the given sequence, or the ingestor is closed.
+     * The writer announces that it sleeps before it checks the slot a last time, so a producer publishing
+     * concurrently either is seen here or sees the flag and unparks the writer.
+     */
+
+    private void idle(int slot, long sequence) {
+        sleeping = true;
+        if (running && published.get(slot) != sequence + 1) LockSupport.park(this);
+        sleeping = false;
+    }
+
+    @SuppressWarnings(value = "unchecked")
+    private void apply(ArrayList<EdgeKey> batch, float[] batchWeights)
+            throws InvalidExpansionStateException, InvalidAhrszStateException {
+        synchronized (ahrsz) {
+            for (int i = 0; i < batch.size(); i++) {
+                EdgeKey key = batch.get(i);
+                ahrsz.addEdge((N) key.from, (N) key.to, batchWeights[i]);
+            }
+            Runnable listener = batchListener;
+            if (listener != null) listener.run();
+        }
+    }
+
+}
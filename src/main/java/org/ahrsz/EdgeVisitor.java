@@ -0,0 +1,13 @@
+package org.ahrsz;
+
+/**
+ * Receives the edges of a node one by one, see DirectedGraph.forEachF() and DirectedGraph.forEachB().
+ *
+ * @param <N> the type of the nodes.
+ */
+
+public interface EdgeVisitor<N> {
+
+    void visit(N node, float weight);
+
+}
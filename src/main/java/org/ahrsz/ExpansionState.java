@@ -5,6 +5,12 @@ import java.util.*;
 /**
  * This class contains all necessary data that is used during reordering of the graph while running the AHRSZ algorithm.
  *
+ * An ExpansionState can be reused for many reorderings with reset(), which avoids allocating new queues and sets
+ * for every reordering. The buffers used by switchPositions are kept here for the same reason.
+ *
+ * shiftUp and shiftDown map every node found by the expansion to its index at the time it was found. The indices
+ * do not change during the expansion, so switchPositions never has to look them up again.
+ *
  * @param <N> The type of the nodes.
  */
 
@@ -13,19 +19,69 @@ public class ExpansionState <N extends Comparable<N>> {
     PriorityQueue<Path<N>> backwardQueue;
     N from;
     N to;
-    Set<N> shiftUp;
-    Set<N> shiftDown;
+    Map<N, Integer> shiftUp;
+    Map<N, Integer> shiftDown;
     boolean success;
 
-    public ExpansionState(N from, N to) {
+    /**
+     * the nodes of shiftUp and shiftDown, and their keys (index << 32 | position in the node list) for sorting.
+     */
+    final ArrayList<N> shiftUpNodes = new ArrayList<>();
+    final ArrayList<N> shiftDownNodes = new ArrayList<>();
+    private long[] shiftUpKeys = new long[16];
+    private long[] shiftDownKeys = new long[16];
+    private int[] slots = new int[16];
+    /**
+     * the neighbours of the node being expanded, collected by the collector from DirectedGraph.forEachF()
+     * and DirectedGraph.forEachB().
+     */
+    final ArrayList<N> neighbours = new ArrayList<>();
+    final EdgeVisitor<N> collector = (node, weight) -> neighbours.add(node);
+
+    ExpansionState() {
         forwardQueue = new PriorityQueue<>();
         backwardQueue = new PriorityQueue<>(11, Collections.reverseOrder());
+        shiftUp = new HashMap<>();
+        shiftDown = new HashMap<>();
+    }
+
+    public ExpansionState(N from, int fromIndex, N to, int toIndex) {
+        this();
+        reset(from, fromIndex, to, toIndex);
+    }
+
+    /**
+     * Prepares a state for a reordering without knowing the indices of @from and @to, which map to null in
+     * shiftDown and shiftUp. The algorithm resets its states with the current indices before every reordering, and
+     * switching positions with a null index fails with an IllegalStateException instead of using it.
+     * @deprecated kept for callers of the former constructor, use ExpansionState(from, fromIndex, to, toIndex).
+     */
+
+    @Deprecated
+    public ExpansionState(N from, N to) {
+        this();
         this.from = from;
         this.to = to;
-        shiftUp = new TreeSet<>();
-        shiftDown = new TreeSet<>();
-        shiftDown.add(from);
-        shiftUp.add(to);
+        shiftDown.put(from, null);
+        shiftUp.put(to, null);
+        this.backwardQueue.add(new Path<>(from));
+        this.forwardQueue.add(new Path<>(to));
+    }
+
+    /**
+     * Prepares this state for the reordering caused by a new edge from @from to @to.
+     */
+
+    void reset(N from, int fromIndex, N to, int toIndex) {
+        forwardQueue.clear();
+        backwardQueue.clear();
+        shiftUp.clear();
+        shiftDown.clear();
+        neighbours.clear();
+        this.from = from;
+        this.to = to;
+        shiftDown.put(from, fromIndex);
+        shiftUp.put(to, toIndex);
         success = false;
         Path<N> fromPath = new Path<>(from);
         this.backwardQueue.add(fromPath);
@@ -33,6 +89,21 @@ public class ExpansionState <N extends Comparable<N>> {
         this.forwardQueue.add(toPath);
     }
 
+    int[] slots(int size) {
+        if (slots.length < size) slots = new int[Math.max(size, slots.length * 2)];
+        return slots;
+    }
+
+    long[] shiftUpKeys(int size) {
+        if (shiftUpKeys.length < size) shiftUpKeys = new long[Math.max(size, shiftUpKeys.length * 2)];
+        return shiftUpKeys;
+    }
+
+    long[] shiftDownKeys(int size) {
+        if (shiftDownKeys.length < size) shiftDownKeys = new long[Math.max(size, shiftDownKeys.length * 2)];
+        return shiftDownKeys;
+    }
+
     public boolean finished() {
         return forwardQueue.isEmpty() && backwardQueue.isEmpty();
     }
@@ -58,4 +129,3 @@ public class ExpansionState <N extends Comparable<N>> {
     }
 
 }
-
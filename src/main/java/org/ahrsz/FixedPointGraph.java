@@ -0,0 +1,343 @@
+package org.ahrsz;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A directed graph that stores its weights as fixed-point long values instead of floats.
+ *
+ * A weight w is stored as round(w * scale) units. Cycle removal subtracts the minimum number of units
+ * from every edge of the cycle, so cancellation is exact and an edge that reaches zero units is always removed.
+ * Optionally, edges with a weight of at most minWeight are invisible to the outside, as in MinWeightHashMapGraph.
+ *
+ * Nodes are interned to dense int ids, and the adjacency of each node is kept in primitive arrays
+ * that are scanned linearly. The float based DirectedGraph API is served on top of this representation.
+ */
+
+public class FixedPointGraph<N extends Comparable<N>> implements DirectedGraph<N> {
+
+    public static final long DEFAULT_SCALE = 1000000L;
+
+    private static final int INITIAL_DEGREE = 4;
+
+    private final long scale;
+    private final long minUnits;
+
+    private final HashMap<N, Integer> ids;
+    private final ArrayList<N> nodes;
+    /**
+     * ids of removed nodes, which are handed out again to new nodes.
+     */
+    private final ArrayDeque<Integer> freeIds;
+
+    private int[][] forwardTargets;
+    private long[][] forwardUnits;
+    private int[] forwardSize;
+
+    private int[][] backwardTargets;
+    private long[][] backwardUnits;
+    private int[] backwardSize;
+
+    public FixedPointGraph() {
+        this(DEFAULT_SCALE);
+    }
+
+    public FixedPointGraph(long scale) {
+        this(scale, 0f);
+    }
+
+    /**
+     * @param scale the number of units that make up a weight of 1.0.
+     * @param minWeight edges with a weight of at most minWeight are not visible to the outside.
+     */
+
+    public FixedPointGraph(long scale, float minWeight) {
+        if (scale <= 0) throw new RuntimeException("The scale must be positive.");
+        this.scale = scale;
+        this.minUnits = Math.round((double) minWeight * scale);
+        this.ids = new HashMap<>();
+        this.nodes = new ArrayList<>();
+        this.freeIds = new ArrayDeque<>();
+        this.forwardTargets = new int[16][];
+        this.forwardUnits = new long[16][];
+        this.forwardSize = new int[16];
+        this.backwardTargets = new int[16][];
+        this.backwardUnits = new long[16][];
+        this.backwardSize = new int[16];
+    }
+
+    public long toUnits(float weight) {
+        return Math.round((double) weight * scale);
+    }
+
+    public float toWeight(long units) {
+        return (float) ((double) units / scale);
+    }
+
+    private int intern(N node) {
+        Integer id = ids.get(node);
+        if (id != null) return id;
+        if (! freeIds.isEmpty()) {
+            int freeId = freeIds.pop();
+            ids.put(node, freeId);
+            nodes.set(freeId, node);
+            return freeId;
+        }
+        int newId = nodes.size();
+        ids.put(node, newId);
+        nodes.add(node);
+        if (newId == forwardSize.length) {
+            int capacity = newId * 2;
+            forwardTargets = Arrays.copyOf(forwardTargets, capacity);
+            forwardUnits = Arrays.copyOf(forwardUnits, capacity);
+            forwardSize = Arrays.copyOf(forwardSize, capacity);
+            backwardTargets = Arrays.copyOf(backwardTargets, capacity);
+            backwardUnits = Arrays.copyOf(backwardUnits, capacity);
+            backwardSize = Arrays.copyOf(backwardSize, capacity);
+        }
+        forwardTargets[newId] = new int[INITIAL_DEGREE];
+        forwardUnits[newId] = new long[INITIAL_DEGREE];
+        backwardTargets[newId] = new int[INITIAL_DEGREE];
+        backwardUnits[newId] = new long[INITIAL_DEGREE];
+        return newId;
+    }
+
+    private static int find(int[] targets, int size, int target) {
+        for (int i = 0; i < size; i++) {
+            if (targets[i] == target) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the weight of the edge from @from to @to in units, or 0 if there is no such edge.
+     */
+
+    public long getUnits(N from, N to) {
+        Integer fromId = ids.get(from);
+        Integer toId = ids.get(to);
+        if (fromId == null || toId == null) return 0;
+        int slot = find(forwardTargets[fromId], forwardSize[fromId], toId);
+        return slot < 0 ? 0 : forwardUnits[fromId][slot];
+    }
+
+    private boolean visible(long units) {
+        return units > minUnits;
+    }
+
+    private HashMap<N, Float> toMap(int[] targets, long[] units, int size) {
+        HashMap<N, Float> result = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (visible(units[i])) result.put(nodes.get(targets[i]), toWeight(units[i]));
+        }
+        return result;
+    }
+
+    /**
+     * This method returns all visible outgoing edges together with its weights for a given node.
+     */
+
+    @Override
+    public HashMap<N, Float> getF(N key) {
+        Integer id = ids.get(key);
+        if (id == null) return new HashMap<>();
+        return toMap(forwardTargets[id], forwardUnits[id], forwardSize[id]);
+    }
+
+    @Override
+    public HashMap<N, Float> getB(N key) {
+        Integer id = ids.get(key);
+        if (id == null) return new HashMap<>();
+        return toMap(backwardTargets[id], backwardUnits[id], backwardSize[id]);
+    }
+
+    @Override
+    public void forEachF(N key, EdgeVisitor<N> visitor) {
+        Integer id = ids.get(key);
+        if (id == null) return;
+        for (int i = 0; i < forwardSize[id]; i++) {
+            long units = forwardUnits[id][i];
+            if (visible(units)) visitor.visit(nodes.get(forwardTargets[id][i]), toWeight(units));
+        }
+    }
+
+    @Override
+    public void forEachB(N key, EdgeVisitor<N> visitor) {
+        Integer id = ids.get(key);
+        if (id == null) return;
+        for (int i = 0; i < backwardSize[id]; i++) {
+            long units = backwardUnits[id][i];
+            if (visible(units)) visitor.visit(nodes.get(backwardTargets[id][i]), toWeight(units));
+        }
+    }
+
+    /**
+     * Adds the weight in units. A positive weight below one unit is rounded up to one unit instead of being lost.
+     */
+
+    @Override
+    public void addEdge(N from, N to, float weight) {
+        if (weight < 0f) throw new RuntimeException("Negative weights are not supported.");
+        long units = toUnits(weight);
+        this.addEdge(from, to, units == 0 && weight > 0f ? 1 : units);
+    }
+
+    /**
+     * Adds @units to the edge, which is created if necessary. Adding zero units does nothing.
+     * @throws ArithmeticException if the units of the edge would overflow a long.
+     */
+
+    public void addEdge(N from, N to, long units) {
+        if (units < 0) throw new RuntimeException("Negative weights are not supported.");
+        if (units == 0) return;
+        int fromId = intern(from);
+        int toId = intern(to);
+        int slot = find(forwardTargets[fromId], forwardSize[fromId], toId);
+        if (slot >= 0) {
+            long sum = Math.addExact(forwardUnits[fromId][slot], units);
+            forwardUnits[fromId][slot] = sum;
+            backwardUnits[toId][find(backwardTargets[toId], backwardSize[toId], fromId)] = sum;
+            return;
+        }
+        appendForward(fromId, toId, units);
+        appendBackward(toId, fromId, units);
+    }
+
+    private void appendForward(int fromId, int toId, long units) {
+        int size = forwardSize[fromId];
+        if (size == forwardTargets[fromId].length) {
+            forwardTargets[fromId] = Arrays.copyOf(forwardTargets[fromId], size * 2);
+            forwardUnits[fromId] = Arrays.copyOf(forwardUnits[fromId], size * 2);
+        }
+        forwardTargets[fromId][size] = toId;
+        forwardUnits[fromId][size] = units;
+        forwardSize[fromId] = size + 1;
+    }
+
+    private void appendBackward(int toId, int fromId, long units) {
+        int size = backwardSize[toId];
+        if (size == backwardTargets[toId].length) {
+            backwardTargets[toId] = Arrays.copyOf(backwardTargets[toId], size * 2);
+            backwardUnits[toId] = Arrays.copyOf(backwardUnits[toId], size * 2);
+        }
+        backwardTargets[toId][size] = fromId;
+        backwardUnits[toId][size] = units;
+        backwardSize[toId] = size + 1;
+    }
+
+    /**
+     * Removes a cycle from the directed graph.
+     * This works by finding the minimum weight of the edges within the cycle,
+     * and then decreasing each edge of the cycle by the minimum weight.
+     * Since weights are integral, the minimum edge always ends up at exactly zero and is removed.
+     * @param cycle the cycle to be removed.
+     */
+
+    @Override
+    public void removeCycle(List<N> cycle) {
+        long decrement = getUnits(cycle.get(cycle.size() - 1), cycle.get(0));
+        for (int i = 0; i < cycle.size() - 1; i++) {
+            long units = getUnits(cycle.get(i), cycle.get(i + 1));
+            if (units < decrement) {
+                decrement = units;
+            }
+        }
+        decreaseCycle(cycle, decrement);
+    }
+
+    private void decreaseCycle(List<N> cycle, long decrement) {
+        decreaseEdge(ids.get(cycle.get(cycle.size() - 1)), ids.get(cycle.get(0)), decrement);
+        for (int i = 0; i < cycle.size() - 1; i++) {
+            decreaseEdge(ids.get(cycle.get(i)), ids.get(cycle.get(i + 1)), decrement);
+        }
+    }
+
+    private void decreaseEdge(int fromId, int toId, long decrement) {
+        int forwardSlot = find(forwardTargets[fromId], forwardSize[fromId], toId);
+        int backwardSlot = find(backwardTargets[toId], backwardSize[toId], fromId);
+        long units = forwardUnits[fromId][forwardSlot] - decrement;
+        if (units == 0) {
+            removeForward(fromId, forwardSlot);
+            removeBackward(toId, backwardSlot);
+        } else {
+            forwardUnits[fromId][forwardSlot] = units;
+            backwardUnits[toId][backwardSlot] = units;
+        }
+    }
+
+    private void removeForward(int fromId, int slot) {
+        int last = --forwardSize[fromId];
+        forwardTargets[fromId][slot] = forwardTargets[fromId][last];
+        forwardUnits[fromId][slot] = forwardUnits[fromId][last];
+    }
+
+    private void removeBackward(int toId, int slot) {
+        int last = --backwardSize[toId];
+        backwardTargets[toId][slot] = backwardTargets[toId][last];
+        backwardUnits[toId][slot] = backwardUnits[toId][last];
+    }
+
+    /**
+     * returns true if and only if there is an edge from node @from to node @to
+     * with a weight greater than the minimum weight.
+     */
+
+    @Override
+    public boolean hasEdge(N from, N to) {
+        return visible(getUnits(from, to));
+    }
+
+    /**
+     * Removes the node together with all its incoming and outgoing edges. The id of the node is reused later.
+     */
+
+    @Override
+    public void removeNode(N node) {
+        Integer id = ids.remove(node);
+        if (id == null) return;
+        for (int i = 0; i < forwardSize[id]; i++) {
+            int toId = forwardTargets[id][i];
+            removeBackward(toId, find(backwardTargets[toId], backwardSize[toId], id));
+        }
+        for (int i = 0; i < backwardSize[id]; i++) {
+            int fromId = backwardTargets[id][i];
+            removeForward(fromId, find(forwardTargets[fromId], forwardSize[fromId], id));
+        }
+        forwardSize[id] = 0;
+        backwardSize[id] = 0;
+        nodes.set(id, null);
+        freeIds.push(id);
+    }
+
+    private boolean hasVisible(long[] units, int size) {
+        for (int i = 0; i < size; i++) {
+            if (visible(units[i])) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Set<N> getForwardKeys() {
+        Set<N> result = new HashSet<>();
+        for (int id = 0; id < nodes.size(); id++) {
+            if (hasVisible(forwardUnits[id], forwardSize[id])) result.add(nodes.get(id));
+        }
+        return result;
+    }
+
+    @Override
+    public Set<N> getBackwardKeys() {
+        Set<N> result = new HashSet<>();
+        for (int id = 0; id < nodes.size(); id++) {
+            if (hasVisible(backwardUnits[id], backwardSize[id])) result.add(nodes.get(id));
+        }
+        return result;
+    }
+
+}
@@ -6,6 +6,7 @@ import java.lang.Float;
 import java.lang.RuntimeException;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class HashMapGraph<N extends Comparable<N>> implements DirectedGraph<N> {
@@ -136,6 +137,46 @@ public class HashMapGraph<N extends Comparable<N>> implements DirectedGraph<N> {
         return (!FloatUtils.floatEqual(this.forward.get(from).get(to), 0f));
     }
 
+    @Override
+    public void forEachF(N key, EdgeVisitor<N> visitor) {
+        HashMap<N, Float> edges = this.forward.get(key);
+        if (edges == null) return;
+        for (Map.Entry<N, Float> edge : edges.entrySet()) {
+            float weight = edge.getValue();
+            if (! FloatUtils.floatEqual(weight, 0f)) visitor.visit(edge.getKey(), weight);
+        }
+    }
+
+    @Override
+    public void forEachB(N key, EdgeVisitor<N> visitor) {
+        HashMap<N, Float> edges = this.backward.get(key);
+        if (edges == null) return;
+        for (Map.Entry<N, Float> edge : edges.entrySet()) {
+            float weight = edge.getValue();
+            if (! FloatUtils.floatEqual(weight, 0f)) visitor.visit(edge.getKey(), weight);
+        }
+    }
+
+    /**
+     * Removes the node together with all its incoming and outgoing edges.
+     */
+
+    @Override
+    public void removeNode(N node) {
+        HashMap<N, Float> outgoing = forward.remove(node);
+        if (outgoing != null) {
+            for (N successor : outgoing.keySet()) {
+                backward.get(successor).remove(node);
+            }
+        }
+        HashMap<N, Float> incoming = backward.remove(node);
+        if (incoming != null) {
+            for (N predecessor : incoming.keySet()) {
+                forward.get(predecessor).remove(node);
+            }
+        }
+    }
+
     @Override
     public Set<N> getForwardKeys() {
         return this.forward.keySet();
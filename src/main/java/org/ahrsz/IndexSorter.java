@@ -0,0 +1,104 @@
+package org.ahrsz;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Stable least significant digit radix sort of non negative int keys, as used for sorting nodes by their index.
+ *
+ * If the range of the keys is small compared to their number, a single counting pass over all bits is done.
+ * Otherwise the keys are sorted 8 bits per pass. The parallel variant splits every pass into chunks: each chunk
+ * counts its digits, the offsets are computed per digit and chunk, so that every chunk scatters its keys to
+ * its own slots, which keeps the sort stable.
+ */
+
+final class IndexSorter {
+
+    /**
+     * inputs smaller than this are sorted sequentially, even if the parallel variant is asked for.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int DIGIT_BITS = 8;
+
+    private IndexSorter() {
+    }
+
+    /**
+     * @param keys the keys to sort by, all non negative. The array is not modified.
+     * @param parallel if true, large inputs are sorted on the common ForkJoinPool.
+     * @return the positions of the keys, ordered by ascending key. Equal keys keep their relative order.
+     */
+
+    static int[] order(int[] keys, boolean parallel) {
+        int n = keys.length;
+        int[] positions = new int[n];
+        int max = 0;
+        for (int i = 0; i < n; i++) {
+            positions[i] = i;
+            max = Math.max(max, keys[i]);
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(max);
+        if (bits == 0) return positions;
+        int chunks = parallel && n >= PARALLEL_THRESHOLD ? ForkJoinPool.getCommonPoolParallelism() * 4 : 1;
+        int digit = chunks == 1 && (1L << bits) <= Math.max(4L * n, 1 << DIGIT_BITS) ? bits : DIGIT_BITS;
+        int[] fromKeys = keys;
+        int[] fromPositions = positions;
+        int[] toKeys = new int[n];
+        int[] toPositions = new int[n];
+        for (int shift = 0; shift < bits; shift += digit) {
+            pass(fromKeys, fromPositions, toKeys, toPositions, shift, Math.min(digit, bits - shift), chunks);
+            if (fromKeys == keys) fromKeys = new int[n];
+            int[] swap = fromKeys;
+            fromKeys = toKeys;
+            toKeys = swap;
+            swap = fromPositions;
+            fromPositions = toPositions;
+            toPositions = swap;
+        }
+        return fromPositions;
+    }
+
+    /**
+     * Moves the keys and their positions to @toKeys and @toPositions, stably ordered by the digit at @shift.
+     */
+
+    private static void pass(final int[] keys, final int[] positions, final int[] toKeys, final int[] toPositions,
+                             final int shift, int digit, final int chunks) {
+        final int n = keys.length;
+        final int mask = (1 << digit) - 1;
+        final int size = (n + chunks - 1) / chunks;
+        final int[][] offsets = new int[chunks][mask + 1];
+        forEachChunk(chunks, c -> {
+            int[] counts = offsets[c];
+            for (int i = c * size, end = Math.min(n, i + size); i < end; i++) {
+                counts[(keys[i] >>> shift) & mask]++;
+            }
+        });
+        int total = 0;
+        for (int b = 0; b <= mask; b++) {
+            for (int c = 0; c < chunks; c++) {
+                int count = offsets[c][b];
+                offsets[c][b] = total;
+                total += count;
+            }
+        }
+        forEachChunk(chunks, c -> {
+            int[] next = offsets[c];
+            for (int i = c * size, end = Math.min(n, i + size); i < end; i++) {
+                int slot = next[(keys[i] >>> shift) & mask]++;
+                toKeys[slot] = keys[i];
+                toPositions[slot] = positions[i];
+            }
+        });
+    }
+
+    private static void forEachChunk(int chunks, IntConsumer action) {
+        if (chunks == 1) {
+            action.accept(0);
+        } else {
+            IntStream.range(0, chunks).parallel().forEach(action);
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.ahrsz;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event covering one AhrszAlgorithm.addEdge(). See InsertRecorder.
+ */
+
+@Name("org.ahrsz.Insert")
+@Label("AHRSZ Insert")
+@Category("AHRSZ")
+@Description("One edge insertion into an AhrszAlgorithm")
+final class InsertEvent extends Event {
+
+    @Label("From")
+    String from;
+
+    @Label("To")
+    String to;
+
+    @Label("Weight")
+    float weight;
+
+    @Label("Expansion Rounds")
+    @Description("Rounds of the forward and backward expansion, summed up over all searches of the insertion")
+    int expansionRounds;
+
+    @Label("Cycles Removed")
+    int cyclesRemoved;
+
+    @Label("Forward Frontier Peak")
+    int forwardFrontierPeak;
+
+    @Label("Backward Frontier Peak")
+    int backwardFrontierPeak;
+
+    @Label("Switched Nodes")
+    @Description("The number of nodes passed to switchPositions")
+    int switchedNodes;
+
+    @Label("Affected Node Count")
+    int affectedNodeCount;
+
+    @Label("Affected Nodes")
+    @Description("The switched nodes, comma separated and capped, if the insertion exceeded the threshold")
+    String affectedNodes;
+
+}
@@ -0,0 +1,51 @@
+package org.ahrsz;
+
+import jdk.jfr.EventType;
+
+/**
+ * The part of InsertRecorder that uses the Java Flight Recorder. InsertRecorder only loads this class if
+ * jdk.jfr is available, so that the algorithm also runs on runtimes without it.
+ */
+
+final class InsertEvents {
+
+    private static final EventType TYPE = EventType.getEventType(InsertEvent.class);
+
+    private InsertEvents() {
+    }
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * @return a begun InsertEvent if insertions are being recorded, null otherwise.
+     */
+
+    static Object begin() {
+        if (! TYPE.isEnabled()) return null;
+        InsertEvent event = new InsertEvent();
+        event.begin();
+        return event;
+    }
+
+    static <N> void commit(Object begun, InsertRecorder<N> recorder, N from, N to, float weight) {
+        InsertEvent event = (InsertEvent) begun;
+        event.end();
+        if (! event.shouldCommit()) return;
+        event.from = String.valueOf(from);
+        event.to = String.valueOf(to);
+        event.weight = weight;
+        event.expansionRounds = recorder.expansionRounds;
+        event.cyclesRemoved = recorder.cyclesRemoved;
+        event.forwardFrontierPeak = recorder.forwardFrontierPeak;
+        event.backwardFrontierPeak = recorder.backwardFrontierPeak;
+        event.switchedNodes = recorder.switchedNodes;
+        if (recorder.exceededThreshold()) {
+            event.affectedNodeCount = recorder.affectedNodeCount();
+            event.affectedNodes = recorder.affectedNodes();
+        }
+        event.commit();
+    }
+
+}
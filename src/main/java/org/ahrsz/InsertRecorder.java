@@ -0,0 +1,140 @@
+package org.ahrsz;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Collects the statistics of one insertion for an InsertEvent.
+ *
+ * The counters are cheap enough to be updated on every insertion. Events are only created while a recording
+ * has the org.ahrsz.Insert event enabled, so without JFR an insertion does not allocate anything here. While
+ * recording, the switched nodes are collected up to a cap, and are attached to the event if the insertion
+ * took longer than the threshold, so that pathological insertions can be replayed offline.
+ *
+ * Everything touching JFR lives in InsertEvents, which is only loaded if jdk.jfr.Event can be found. On runtimes
+ * without JFR, like Java 8 before update 262, the recorder only keeps the counters.
+ *
+ * @param <N> the type of the nodes.
+ */
+
+class InsertRecorder<N> {
+
+    private static final boolean JFR = jfrAvailable();
+
+    int expansionRounds;
+    int cyclesRemoved;
+    int forwardFrontierPeak;
+    int backwardFrontierPeak;
+    int switchedNodes;
+
+    private long thresholdNanos = Long.MAX_VALUE;
+    private int maxAffectedNodes;
+    private boolean capturing;
+    private long start;
+    private int affectedNodeCount;
+    private final ArrayList<N> affected = new ArrayList<>();
+    /**
+     * the begun InsertEvent of the current insertion, null if it is not recorded.
+     */
+    private Object event;
+
+    private static boolean jfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            Class.forName("org.ahrsz.InsertEvents");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if insertions are being recorded, so that an algorithm only needs a recorder from then on.
+     */
+
+    static boolean enabled() {
+        return JFR && InsertEvents.enabled();
+    }
+
+    void configure(long thresholdNanos, int maxAffectedNodes) {
+        this.thresholdNanos = thresholdNanos;
+        this.maxAffectedNodes = maxAffectedNodes;
+    }
+
+    /**
+     * Resets the counters for a new insertion.
+     * @return true if the insertion is being recorded, in which case commit() has to be called after it.
+     */
+
+    boolean begin() {
+        expansionRounds = 0;
+        cyclesRemoved = 0;
+        forwardFrontierPeak = 0;
+        backwardFrontierPeak = 0;
+        switchedNodes = 0;
+        event = JFR ? InsertEvents.begin() : null;
+        if (event == null) return false;
+        capturing = maxAffectedNodes > 0 && thresholdNanos != Long.MAX_VALUE;
+        affectedNodeCount = 0;
+        affected.clear();
+        start = System.nanoTime();
+        return true;
+    }
+
+    void frontiers(int forward, int backward) {
+        if (forward > forwardFrontierPeak) forwardFrontierPeak = forward;
+        if (backward > backwardFrontierPeak) backwardFrontierPeak = backward;
+    }
+
+    void switched(Collection<N> nodes) {
+        switchedNodes += nodes.size();
+        if (! capturing) return;
+        affectedNodeCount += nodes.size();
+        for (N node : nodes) {
+            if (affected.size() >= maxAffectedNodes) return;
+            affected.add(node);
+        }
+    }
+
+    /**
+     * Ends the event of the current insertion, and releases the captured nodes so that they are not kept alive
+     * until the next recorded insertion.
+     */
+
+    void commit(N from, N to, float weight) {
+        Object begun = event;
+        event = null;
+        InsertEvents.commit(begun, this, from, to, weight);
+        affected.clear();
+    }
+
+    /**
+     * @return true if the switched nodes are to be attached to the event of the current insertion.
+     */
+
+    boolean exceededThreshold() {
+        return capturing && affectedNodeCount > 0 && System.nanoTime() - start > thresholdNanos;
+    }
+
+    int affectedNodeCount() {
+        return affectedNodeCount;
+    }
+
+    /**
+     * @return a rough estimate of the bytes held by this recorder, assuming compressed oops.
+     */
+
+    long estimatedBytes() {
+        return 64 + 40 + 4L * affected.size();
+    }
+
+    String affectedNodes() {
+        StringBuilder nodes = new StringBuilder();
+        for (N node : affected) {
+            if (nodes.length() > 0) nodes.append(',');
+            nodes.append(node);
+        }
+        return nodes.toString();
+    }
+
+}
@@ -0,0 +1,122 @@
+package org.ahrsz;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Maintains the longest-path level of every node of a topologically ordered graph.
+ *
+ * A node without predecessors has level 0, every other node has a level one higher than its highest predecessor.
+ * All nodes on the same level are independent of each other, so the levels can be used to schedule work in waves.
+ *
+ * Levels are updated incrementally: only the seeds of an update and the nodes downstream of a changed level
+ * are visited. Nodes are visited in topological order, so every node is recomputed at most once per update.
+ * Like the order, the levels only take the visible edges into account, see DirectedGraph.forEachF().
+ *
+ * @param <N> the type of the nodes.
+ */
+
+public class LevelIndex<N extends Comparable<N>> {
+
+    private final DirectedGraph<N> directedGraph;
+    private final Map<N, Integer> node2Index;
+    private final HashMap<N, Integer> node2Level;
+    private final ArrayList<Set<N>> level2Nodes;
+    /**
+     * the neighbours of the node being updated, collected by the collector.
+     */
+    private final List<N> neighbours = new ArrayList<>();
+    private final EdgeVisitor<N> collector = (node, weight) -> neighbours.add(node);
+
+    LevelIndex(DirectedGraph<N> directedGraph, Map<N, Integer> node2Index) {
+        this.directedGraph = directedGraph;
+        this.node2Index = node2Index;
+        this.node2Level = new HashMap<>();
+        this.level2Nodes = new ArrayList<>();
+        update(node2Index.keySet());
+    }
+
+    /**
+     * @return the level of node, or -1 if the node is unknown.
+     */
+
+    public int level(N node) {
+        Integer level = node2Level.get(node);
+        return level == null ? -1 : level;
+    }
+
+    /**
+     * @return the number of levels.
+     */
+
+    public int depth() {
+        return level2Nodes.size();
+    }
+
+    /**
+     * @return all nodes on the given level. These nodes can be processed in parallel once all lower levels are done.
+     */
+
+    public Set<N> frontier(int level) {
+        if (level < 0 || level >= level2Nodes.size()) return Collections.emptySet();
+        return Collections.unmodifiableSet(level2Nodes.get(level));
+    }
+
+    void remove(N node) {
+        Integer level = node2Level.remove(node);
+        if (level != null) setLevel(node, level, -1);
+    }
+
+    /**
+     * Recomputes the levels of the seeds and propagates changes downstream.
+     * The topological order must be valid when this method is called.
+     */
+
+    void update(Collection<N> seeds) {
+        PriorityQueue<N> queue = new PriorityQueue<>(Math.max(1, seeds.size()), new IndexComparator<N>(node2Index));
+        Set<N> queued = new HashSet<>();
+        for (N seed : seeds) {
+            if (node2Index.containsKey(seed) && queued.add(seed)) queue.add(seed);
+        }
+        while (! queue.isEmpty()) {
+            N node = queue.remove();
+            queued.remove(node);
+            int level = 0;
+            neighbours.clear();
+            directedGraph.forEachB(node, collector);
+            for (N predecessor : neighbours) {
+                level = Math.max(level, level(predecessor) + 1);
+            }
+            int oldLevel = level(node);
+            if (level == oldLevel) continue;
+            node2Level.put(node, level);
+            setLevel(node, oldLevel, level);
+            neighbours.clear();
+            directedGraph.forEachF(node, collector);
+            for (N successor : neighbours) {
+                if (queued.add(successor)) queue.add(successor);
+            }
+        }
+    }
+
+    private void setLevel(N node, int oldLevel, int newLevel) {
+        if (oldLevel >= 0) level2Nodes.get(oldLevel).remove(node);
+        if (newLevel >= 0) {
+            while (level2Nodes.size() <= newLevel) {
+                level2Nodes.add(new HashSet<N>());
+            }
+            level2Nodes.get(newLevel).add(node);
+        }
+        while (! level2Nodes.isEmpty() && level2Nodes.get(level2Nodes.size() - 1).isEmpty()) {
+            level2Nodes.remove(level2Nodes.size() - 1);
+        }
+    }
+
+}
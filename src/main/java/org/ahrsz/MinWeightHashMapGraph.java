@@ -3,6 +3,7 @@ package org.ahrsz;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -151,6 +152,61 @@ public class MinWeightHashMapGraph<N extends Comparable<N>> implements DirectedG
         return (this.forward.get(from).get(to).compareTo(minWeight) > 0);
     }
 
+    /**
+     * Looks the weight up directly, without building the filtered map of getF().
+     */
+
+    @Override
+    public Float getWeight(N from, N to) {
+        HashMap<N, Float> edges = this.forward.get(from);
+        Float weight = edges == null ? null : edges.get(to);
+        return weight != null && weight > minWeight ? weight : null;
+    }
+
+    /**
+     * Passes the edges with weight greater than this.minWeight to the visitor, without building the filtered map of getF().
+     */
+
+    @Override
+    public void forEachF(N key, EdgeVisitor<N> visitor) {
+        HashMap<N, Float> edges = this.forward.get(key);
+        if (edges == null) return;
+        for (Map.Entry<N, Float> edge : edges.entrySet()) {
+            float weight = edge.getValue();
+            if (weight > minWeight) visitor.visit(edge.getKey(), weight);
+        }
+    }
+
+    @Override
+    public void forEachB(N key, EdgeVisitor<N> visitor) {
+        HashMap<N, Float> edges = this.backward.get(key);
+        if (edges == null) return;
+        for (Map.Entry<N, Float> edge : edges.entrySet()) {
+            float weight = edge.getValue();
+            if (weight > minWeight) visitor.visit(edge.getKey(), weight);
+        }
+    }
+
+    /**
+     * Removes the node together with all its incoming and outgoing edges.
+     */
+
+    @Override
+    public void removeNode(N node) {
+        HashMap<N, Float> outgoing = forward.remove(node);
+        if (outgoing != null) {
+            for (N successor : outgoing.keySet()) {
+                backward.get(successor).remove(node);
+            }
+        }
+        HashMap<N, Float> incoming = backward.remove(node);
+        if (incoming != null) {
+            for (N predecessor : incoming.keySet()) {
+                forward.get(predecessor).remove(node);
+            }
+        }
+    }
+
     /**
      * Find all nodes that have at least one outgoing edge that is larger than minWeight.
      * This is used by algorithms that are only interested in edges with weight more than minWeight.
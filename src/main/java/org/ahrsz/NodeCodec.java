@@ -0,0 +1,79 @@
+package org.ahrsz;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes nodes to and reads nodes from a binary buffer.
+ *
+ * write() may throw a BufferOverflowException if the buffer is too small, in which case the caller
+ * retries with a larger buffer.
+ */
+
+public interface NodeCodec<N> {
+
+    void write(N node, ByteBuffer buffer);
+
+    N read(ByteBuffer buffer);
+
+    static NodeCodec<Integer> integers() {
+        return new NodeCodec<Integer>() {
+            @Override
+            public void write(Integer node, ByteBuffer buffer) {
+                buffer.putInt(node);
+            }
+
+            @Override
+            public Integer read(ByteBuffer buffer) {
+                return buffer.getInt();
+            }
+        };
+    }
+
+    static NodeCodec<Long> longs() {
+        return new NodeCodec<Long>() {
+            @Override
+            public void write(Long node, ByteBuffer buffer) {
+                buffer.putLong(node);
+            }
+
+            @Override
+            public Long read(ByteBuffer buffer) {
+                return buffer.getLong();
+            }
+        };
+    }
+
+    static NodeCodec<Character> characters() {
+        return new NodeCodec<Character>() {
+            @Override
+            public void write(Character node, ByteBuffer buffer) {
+                buffer.putChar(node);
+            }
+
+            @Override
+            public Character read(ByteBuffer buffer) {
+                return buffer.getChar();
+            }
+        };
+    }
+
+    static NodeCodec<String> strings() {
+        return new NodeCodec<String>() {
+            @Override
+            public void write(String node, ByteBuffer buffer) {
+                byte[] bytes = node.getBytes(StandardCharsets.UTF_8);
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            }
+
+            @Override
+            public String read(ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+}
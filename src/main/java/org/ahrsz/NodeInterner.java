@@ -0,0 +1,64 @@
+package org.ahrsz;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Maps equal nodes to one canonical instance, so that many graphs referring to the same node
+ * share a single object instead of holding one copy each.
+ *
+ * The canonical instances are only referenced weakly. Once no graph refers to a node anymore, e.g. because its
+ * tenant was removed from an AhrszRegistry, the garbage collector drops it from the interner as well. The nodes are
+ * spread over several weak maps by their hash code, each guarded by its own lock.
+ */
+
+public class NodeInterner<N> {
+
+    private static final int STRIPES = 16;
+
+    private final Map<N, WeakReference<N>>[] stripes;
+
+    public NodeInterner() {
+        stripes = newStripes(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new WeakHashMap<>();
+        }
+    }
+
+    @SuppressWarnings(value = "unchecked")
+    private static <N> Map<N, WeakReference<N>>[] newStripes(int count) {
+        return (Map<N, WeakReference<N>>[]) new Map<?, ?>[count];
+    }
+
+    /**
+     * @return the canonical instance that is equal to node.
+     */
+
+    public N intern(N node) {
+        int hash = node.hashCode();
+        Map<N, WeakReference<N>> stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        synchronized (stripe) {
+            WeakReference<N> reference = stripe.get(node);
+            N existing = reference == null ? null : reference.get();
+            if (existing != null) return existing;
+            stripe.put(node, new WeakReference<>(node));
+            return node;
+        }
+    }
+
+    /**
+     * @return the number of interned nodes that have not been collected yet.
+     */
+
+    public int size() {
+        int result = 0;
+        for (Map<N, WeakReference<N>> stripe : stripes) {
+            synchronized (stripe) {
+                result += stripe.size();
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,560 @@
+package org.ahrsz;
+
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A directed graph that keeps its adjacency lists and weights outside of the java heap.
+ *
+ * Only the interning of nodes to int ids is kept on the heap. Everything else lives in segments obtained from a
+ * SegmentAllocator, either direct buffers or memory mapped files:
+ *
+ * - a node table with the head block and the degree of the forward and backward adjacency list of every node,
+ *   split into segments of at most 2^20 nodes,
+ * - slabs of fixed size blocks, each holding up to 15 neighbour ids and the id of the next block of the list,
+ * - an open addressing hash table with linear probing, mapping every edge (from, to) to its weight. The table is
+ *   addressed with long slot numbers and split into segments of at most 2^20 slots, so it is not limited by the
+ *   int capacity of a single ByteBuffer.
+ *
+ * New entries are added to the head block of a list, and a new head block is linked in front once it is full.
+ * Removed entries are replaced by the last entry of the list, and emptied blocks go to a free list.
+ * The number of live objects on the heap therefore does not grow with the number of edges.
+ *
+ * Segments that are replaced while growing, i.e. the last node segment and the edge table, are not freed explicitly.
+ * Direct buffers and mapped files release their memory only when the garbage collector collects the buffer object,
+ * so a growing graph may temporarily hold up to twice the memory of these tables outside the heap.
+ *
+ * Weights behave as in HashMapGraph: an edge whose weight drops to zero during cycle removal is removed.
+ * Optionally, edges with a weight of at most minWeight are invisible, as in MinWeightHashMapGraph.
+ */
+
+public class OffHeapGraph<N extends Comparable<N>> implements DirectedGraph<N> {
+
+    private static final int NIL = -1;
+
+    private static final int NODE_BYTES = 16;
+    private static final int INITIAL_NODES = 64;
+    private static final int FORWARD = 0;
+    private static final int BACKWARD = 8;
+
+    private static final int BLOCK_ENTRIES = 15;
+    private static final int BLOCK_BYTES = 64;
+    private static final int NEXT_OFFSET = BLOCK_ENTRIES * 4;
+    private static final int BLOCKS_PER_SLAB = 1 << 14;
+
+    private static final int TABLE_ENTRY_BYTES = 12;
+    private static final int SEGMENT_SHIFT = 20;
+    /**
+     * keys are stored as (from << 32 | to) + 1, so that the zeroed memory of a new table reads as empty.
+     */
+    private static final long EMPTY = 0L;
+    private static final long DELETED = -1L;
+
+    private final SegmentAllocator allocator;
+    private final float minWeight;
+    /**
+     * every segment of the edge table holds up to 1 << segmentShift slots, every segment of the node table up to
+     * 1 << segmentShift nodes.
+     */
+    private final int segmentShift;
+
+    private final HashMap<N, Integer> ids;
+    private final ArrayList<N> nodes;
+    private final ArrayDeque<Integer> freeIds;
+
+    private final ArrayList<ByteBuffer> nodeTable;
+
+    private final ArrayList<ByteBuffer> slabs;
+    private int allocatedBlocks;
+    private int freeBlock;
+
+    private ByteBuffer[] edgeTable;
+    private long tableSlots;
+    private long usedSlots;
+
+    public OffHeapGraph() {
+        this(SegmentAllocator.direct(), 0f);
+    }
+
+    /**
+     * @param allocator provides the segments for the node table, the edge blocks and the edge table.
+     * @param minWeight edges with a weight of at most minWeight are not visible to the outside.
+     */
+
+    public OffHeapGraph(SegmentAllocator allocator, float minWeight) {
+        this(allocator, minWeight, SEGMENT_SHIFT);
+    }
+
+    OffHeapGraph(SegmentAllocator allocator, float minWeight, int segmentShift) {
+        this.allocator = allocator;
+        this.minWeight = minWeight;
+        this.segmentShift = segmentShift;
+        this.ids = new HashMap<>();
+        this.nodes = new ArrayList<>();
+        this.freeIds = new ArrayDeque<>();
+        this.nodeTable = new ArrayList<>();
+        this.slabs = new ArrayList<>();
+        this.allocatedBlocks = 0;
+        this.freeBlock = NIL;
+        this.tableSlots = 1024;
+        this.edgeTable = allocateTable(tableSlots);
+        this.usedSlots = 0;
+    }
+
+    // ---- nodes
+
+    private int intern(N node) {
+        Integer id = ids.get(node);
+        if (id != null) return id;
+        int newId;
+        if (! freeIds.isEmpty()) {
+            newId = freeIds.pop();
+            nodes.set(newId, node);
+        } else {
+            newId = nodes.size();
+            nodes.add(node);
+            ensureNodeCapacity(newId);
+        }
+        ids.put(node, newId);
+        setHead(newId, FORWARD, NIL);
+        setDegree(newId, FORWARD, 0);
+        setHead(newId, BACKWARD, NIL);
+        setDegree(newId, BACKWARD, 0);
+        return newId;
+    }
+
+    /**
+     * Makes room for the node @id, which is the next id after all existing ones. A new segment starts small and
+     * doubles until it holds 1 << segmentShift nodes, then the next segment is started.
+     */
+
+    private void ensureNodeCapacity(int id) {
+        int index = id >>> segmentShift;
+        if (index == nodeTable.size()) {
+            nodeTable.add(allocator.allocate(Math.min(INITIAL_NODES, 1 << segmentShift) * NODE_BYTES));
+            return;
+        }
+        ByteBuffer segment = nodeTable.get(index);
+        if (nodeOffset(id) < segment.capacity()) return;
+        ByteBuffer larger = allocator.allocate(Math.min(segment.capacity() * 2, (1 << segmentShift) * NODE_BYTES));
+        ByteBuffer source = segment.duplicate();
+        ((Buffer) source).clear();
+        larger.put(source);
+        ((Buffer) larger).clear();
+        nodeTable.set(index, larger);
+    }
+
+    private ByteBuffer nodeSegment(int id) {
+        return nodeTable.get(id >>> segmentShift);
+    }
+
+    private int nodeOffset(int id) {
+        return (id & ((1 << segmentShift) - 1)) * NODE_BYTES;
+    }
+
+    private int head(int id, int direction) {
+        return nodeSegment(id).getInt(nodeOffset(id) + direction);
+    }
+
+    private void setHead(int id, int direction, int block) {
+        nodeSegment(id).putInt(nodeOffset(id) + direction, block);
+    }
+
+    private int degree(int id, int direction) {
+        return nodeSegment(id).getInt(nodeOffset(id) + direction + 4);
+    }
+
+    private void setDegree(int id, int direction, int degree) {
+        nodeSegment(id).putInt(nodeOffset(id) + direction + 4, degree);
+    }
+
+    // ---- blocks
+
+    private int allocateBlock() {
+        if (freeBlock != NIL) {
+            int block = freeBlock;
+            freeBlock = next(block);
+            return block;
+        }
+        if (allocatedBlocks == slabs.size() * BLOCKS_PER_SLAB) {
+            slabs.add(allocator.allocate(BLOCKS_PER_SLAB * BLOCK_BYTES));
+        }
+        return allocatedBlocks++;
+    }
+
+    private void releaseBlock(int block) {
+        setNext(block, freeBlock);
+        freeBlock = block;
+    }
+
+    private ByteBuffer slab(int block) {
+        return slabs.get(block / BLOCKS_PER_SLAB);
+    }
+
+    private int offset(int block) {
+        return (block % BLOCKS_PER_SLAB) * BLOCK_BYTES;
+    }
+
+    private int entry(int block, int i) {
+        return slab(block).getInt(offset(block) + 4 * i);
+    }
+
+    private void setEntry(int block, int i, int value) {
+        slab(block).putInt(offset(block) + 4 * i, value);
+    }
+
+    private int next(int block) {
+        return slab(block).getInt(offset(block) + NEXT_OFFSET);
+    }
+
+    private void setNext(int block, int next) {
+        slab(block).putInt(offset(block) + NEXT_OFFSET, next);
+    }
+
+    /**
+     * The head block holds the entries from (degree - 1) / BLOCK_ENTRIES * BLOCK_ENTRIES up to degree - 1,
+     * every following block is full.
+     */
+
+    private void append(int id, int direction, int neighbour) {
+        int degree = degree(id, direction);
+        int slot = degree % BLOCK_ENTRIES;
+        if (slot == 0) {
+            int block = allocateBlock();
+            setNext(block, head(id, direction));
+            setHead(id, direction, block);
+        }
+        setEntry(head(id, direction), slot, neighbour);
+        setDegree(id, direction, degree + 1);
+    }
+
+    private void removeEntry(int id, int direction, int neighbour) {
+        int degree = degree(id, direction);
+        int head = head(id, direction);
+        int lastSlot = (degree - 1) % BLOCK_ENTRIES;
+        int last = entry(head, lastSlot);
+        for (int block = head, first = lastSlot; block != NIL; block = next(block), first = BLOCK_ENTRIES - 1) {
+            for (int i = first; i >= 0; i--) {
+                if (entry(block, i) != neighbour) continue;
+                setEntry(block, i, last);
+                setDegree(id, direction, degree - 1);
+                if (lastSlot == 0) {
+                    setHead(id, direction, next(head));
+                    releaseBlock(head);
+                }
+                return;
+            }
+        }
+    }
+
+    private void releaseList(int id, int direction) {
+        int block = head(id, direction);
+        while (block != NIL) {
+            int next = next(block);
+            releaseBlock(block);
+            block = next;
+        }
+        setHead(id, direction, NIL);
+        setDegree(id, direction, 0);
+    }
+
+    // ---- edge table
+
+    private static long key(int from, int to) {
+        return (((long) from << 32) | (to & 0xffffffffL)) + 1;
+    }
+
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private ByteBuffer[] allocateTable(long slots) {
+        int segmentSlots = (int) Math.min(slots, 1L << segmentShift);
+        ByteBuffer[] segments = new ByteBuffer[(int) (slots / segmentSlots)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = allocator.allocate(segmentSlots * TABLE_ENTRY_BYTES);
+        }
+        return segments;
+    }
+
+    private ByteBuffer segment(ByteBuffer[] table, long slot) {
+        return table[(int) (slot >>> segmentShift)];
+    }
+
+    private int tableOffset(long slot) {
+        return (int) (slot & ((1L << segmentShift) - 1)) * TABLE_ENTRY_BYTES;
+    }
+
+    private long keyAt(ByteBuffer[] table, long slot) {
+        return segment(table, slot).getLong(tableOffset(slot));
+    }
+
+    private void setKey(ByteBuffer[] table, long slot, long key) {
+        segment(table, slot).putLong(tableOffset(slot), key);
+    }
+
+    private float weightAt(ByteBuffer[] table, long slot) {
+        return segment(table, slot).getFloat(tableOffset(slot) + 8);
+    }
+
+    private void setWeight(ByteBuffer[] table, long slot, float weight) {
+        segment(table, slot).putFloat(tableOffset(slot) + 8, weight);
+    }
+
+    private long findSlot(long key) {
+        long mask = tableSlots - 1;
+        for (long slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long stored = keyAt(edgeTable, slot);
+            if (stored == key) return slot;
+            if (stored == EMPTY) return NIL;
+        }
+    }
+
+    private void insertSlot(long key, float weight) {
+        if ((usedSlots + 1) * 2 > tableSlots) rehash();
+        long mask = tableSlots - 1;
+        long slot = hash(key) & mask;
+        while (true) {
+            long stored = keyAt(edgeTable, slot);
+            if (stored == EMPTY || stored == DELETED) break;
+            slot = (slot + 1) & mask;
+        }
+        if (keyAt(edgeTable, slot) == EMPTY) usedSlots++;
+        setKey(edgeTable, slot, key);
+        setWeight(edgeTable, slot, weight);
+    }
+
+    private void rehash() {
+        ByteBuffer[] old = edgeTable;
+        long oldSlots = tableSlots;
+        long live = 0;
+        for (long slot = 0; slot < oldSlots; slot++) {
+            if (keyAt(old, slot) > EMPTY) live++;
+        }
+        if (live * 4 > oldSlots) tableSlots = oldSlots * 2;
+        edgeTable = allocateTable(tableSlots);
+        usedSlots = 0;
+        long mask = tableSlots - 1;
+        for (long slot = 0; slot < oldSlots; slot++) {
+            long key = keyAt(old, slot);
+            if (key <= EMPTY) continue;
+            long target = hash(key) & mask;
+            while (keyAt(edgeTable, target) != EMPTY) {
+                target = (target + 1) & mask;
+            }
+            setKey(edgeTable, target, key);
+            setWeight(edgeTable, target, weightAt(old, slot));
+            usedSlots++;
+        }
+    }
+
+    private float weight(int from, int to) {
+        long slot = findSlot(key(from, to));
+        return slot == NIL ? 0f : weightAt(edgeTable, slot);
+    }
+
+    private boolean visible(float weight) {
+        return weight > minWeight && ! FloatUtils.floatEqual(weight, 0f);
+    }
+
+    // ---- DirectedGraph
+
+    private HashMap<N, Float> edges(N key, int direction) {
+        HashMap<N, Float> result = new HashMap<>();
+        Integer id = ids.get(key);
+        if (id == null) return result;
+        int remaining = degree(id, direction);
+        for (int block = head(id, direction); block != NIL; block = next(block)) {
+            int entries = remaining % BLOCK_ENTRIES == 0 ? BLOCK_ENTRIES : remaining % BLOCK_ENTRIES;
+            for (int i = 0; i < entries; i++) {
+                int neighbour = entry(block, i);
+                float weight = direction == FORWARD ? weight(id, neighbour) : weight(neighbour, id);
+                if (visible(weight)) result.put(nodes.get(neighbour), weight);
+            }
+            remaining -= entries;
+        }
+        return result;
+    }
+
+    /**
+     * This method returns all visible outgoing edges together with its weights for a given node.
+     */
+
+    @Override
+    public HashMap<N, Float> getF(N key) {
+        return edges(key, FORWARD);
+    }
+
+    @Override
+    public HashMap<N, Float> getB(N key) {
+        return edges(key, BACKWARD);
+    }
+
+    @Override
+    public void forEachF(N key, EdgeVisitor<N> visitor) {
+        visit(key, FORWARD, visitor);
+    }
+
+    @Override
+    public void forEachB(N key, EdgeVisitor<N> visitor) {
+        visit(key, BACKWARD, visitor);
+    }
+
+    private void visit(N key, int direction, EdgeVisitor<N> visitor) {
+        Integer id = ids.get(key);
+        if (id == null) return;
+        int remaining = degree(id, direction);
+        for (int block = head(id, direction); block != NIL; block = next(block)) {
+            int entries = remaining % BLOCK_ENTRIES == 0 ? BLOCK_ENTRIES : remaining % BLOCK_ENTRIES;
+            for (int i = 0; i < entries; i++) {
+                int neighbour = entry(block, i);
+                float weight = direction == FORWARD ? weight(id, neighbour) : weight(neighbour, id);
+                if (visible(weight)) visitor.visit(nodes.get(neighbour), weight);
+            }
+            remaining -= entries;
+        }
+    }
+
+    @Override
+    public void addEdge(N from, N to, float weight) {
+        if (weight < 0f) throw new RuntimeException("Negative weights are not supported.");
+        int fromId = intern(from);
+        int toId = intern(to);
+        long key = key(fromId, toId);
+        long slot = findSlot(key);
+        if (slot != NIL) {
+            setWeight(edgeTable, slot, weightAt(edgeTable, slot) + weight);
+            return;
+        }
+        insertSlot(key, weight);
+        append(fromId, FORWARD, toId);
+        append(toId, BACKWARD, fromId);
+    }
+
+    private void removeEdge(int fromId, int toId) {
+        long slot = findSlot(key(fromId, toId));
+        if (slot == NIL) return;
+        setKey(edgeTable, slot, DELETED);
+        removeEntry(fromId, FORWARD, toId);
+        removeEntry(toId, BACKWARD, fromId);
+    }
+
+    /**
+     * Removes a cycle from the directed graph.
+     * This works by finding the minimum weight of the edges within the cycle,
+     * and then decreasing each edge of the cycle by the minimum weight.
+     * @param cycle the cycle to be removed.
+     */
+
+    @Override
+    public void removeCycle(List<N> cycle) {
+        int[] cycleIds = new int[cycle.size()];
+        for (int i = 0; i < cycle.size(); i++) {
+            cycleIds[i] = ids.get(cycle.get(i));
+        }
+        float minWeight = weight(cycleIds[cycleIds.length - 1], cycleIds[0]);
+        for (int i = 0; i < cycleIds.length - 1; i++) {
+            float weight = weight(cycleIds[i], cycleIds[i + 1]);
+            if (weight < minWeight) {
+                minWeight = weight;
+            }
+        }
+        decreaseEdge(cycleIds[cycleIds.length - 1], cycleIds[0], minWeight);
+        for (int i = 0; i < cycleIds.length - 1; i++) {
+            decreaseEdge(cycleIds[i], cycleIds[i + 1], minWeight);
+        }
+    }
+
+    private void decreaseEdge(int fromId, int toId, float decrement) {
+        long slot = findSlot(key(fromId, toId));
+        float weight = weightAt(edgeTable, slot) - decrement;
+        if (FloatUtils.floatEqual(weight, 0f) || weight < 0f) {
+            removeEdge(fromId, toId);
+        } else {
+            setWeight(edgeTable, slot, weight);
+        }
+    }
+
+    /**
+     * returns true if and only if there is a visible edge from node @from to node @to.
+     */
+
+    @Override
+    public boolean hasEdge(N from, N to) {
+        Integer fromId = ids.get(from);
+        Integer toId = ids.get(to);
+        if (fromId == null || toId == null) return false;
+        return visible(weight(fromId, toId));
+    }
+
+    /**
+     * Removes the node together with all its incoming and outgoing edges. The id of the node is reused later.
+     */
+
+    @Override
+    public void removeNode(N node) {
+        Integer id = ids.get(node);
+        if (id == null) return;
+        for (N successor : edges(node, FORWARD).keySet()) {
+            removeEdge(id, ids.get(successor));
+        }
+        for (N predecessor : edges(node, BACKWARD).keySet()) {
+            removeEdge(ids.get(predecessor), id);
+        }
+        // invisible edges are not returned by edges(), remove whatever is left.
+        while (degree(id, FORWARD) > 0) {
+            removeEdge(id, entry(head(id, FORWARD), 0));
+        }
+        while (degree(id, BACKWARD) > 0) {
+            removeEdge(entry(head(id, BACKWARD), 0), id);
+        }
+        releaseList(id, FORWARD);
+        releaseList(id, BACKWARD);
+        ids.remove(node);
+        nodes.set(id, null);
+        freeIds.push(id);
+    }
+
+    private Set<N> keys(int direction) {
+        Set<N> result = new HashSet<>();
+        for (int id = 0; id < nodes.size(); id++) {
+            if (nodes.get(id) == null || degree(id, direction) == 0) continue;
+            if (! edges(nodes.get(id), direction).isEmpty()) result.add(nodes.get(id));
+        }
+        return result;
+    }
+
+    @Override
+    public Set<N> getForwardKeys() {
+        return keys(FORWARD);
+    }
+
+    @Override
+    public Set<N> getBackwardKeys() {
+        return keys(BACKWARD);
+    }
+
+    /**
+     * @return the number of bytes allocated outside of the heap.
+     */
+
+    public long offHeapBytes() {
+        long nodeBytes = 0;
+        for (ByteBuffer segment : nodeTable) {
+            nodeBytes += segment.capacity();
+        }
+        return nodeBytes + tableSlots * TABLE_ENTRY_BYTES
+                + (long) slabs.size() * BLOCKS_PER_SLAB * BLOCK_BYTES;
+    }
+
+}
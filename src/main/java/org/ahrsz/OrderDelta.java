@@ -0,0 +1,132 @@
+package org.ahrsz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The changes to the topological order caused by a single insertion: nodes that were added to the order,
+ * nodes that were moved to a new index, nodes that were removed from the order, and edges that were removed
+ * from the graph while removing cycles.
+ *
+ * AhrszAlgorithm reuses one instance for all insertions, so a delta is only valid until the next insertion.
+ *
+ * @param <N> the type of the nodes.
+ */
+
+public class OrderDelta<N> {
+
+    private long sequence;
+
+    private final ArrayList<N> added = new ArrayList<>();
+    private int[] addedIndices = new int[16];
+    private final ArrayList<N> moved = new ArrayList<>();
+    private int[] movedIndices = new int[16];
+    private final ArrayList<N> removed = new ArrayList<>();
+    private final ArrayList<N> removedEdgeSources = new ArrayList<>();
+    private final ArrayList<N> removedEdgeSinks = new ArrayList<>();
+
+    /**
+     * @return the number of this delta. Deltas of one algorithm are numbered consecutively starting at 1.
+     */
+
+    public long sequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    void clear() {
+        added.clear();
+        moved.clear();
+        removed.clear();
+        removedEdgeSources.clear();
+        removedEdgeSinks.clear();
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && moved.isEmpty() && removed.isEmpty() && removedEdgeSources.isEmpty();
+    }
+
+    void nodeAdded(N node, int index) {
+        if (added.size() == addedIndices.length) addedIndices = Arrays.copyOf(addedIndices, added.size() * 2);
+        addedIndices[added.size()] = index;
+        added.add(node);
+    }
+
+    void nodeMoved(N node, int index) {
+        if (moved.size() == movedIndices.length) movedIndices = Arrays.copyOf(movedIndices, moved.size() * 2);
+        movedIndices[moved.size()] = index;
+        moved.add(node);
+    }
+
+    void nodeRemoved(N node) {
+        removed.add(node);
+    }
+
+    void edgeRemoved(N from, N to) {
+        removedEdgeSources.add(from);
+        removedEdgeSinks.add(to);
+    }
+
+    public int addedCount() {
+        return added.size();
+    }
+
+    public N added(int i) {
+        return added.get(i);
+    }
+
+    public int addedIndex(int i) {
+        return addedIndices[i];
+    }
+
+    /**
+     * A node may be moved several times during one insertion. Only the last move reflects its final index.
+     */
+
+    public int movedCount() {
+        return moved.size();
+    }
+
+    public N moved(int i) {
+        return moved.get(i);
+    }
+
+    public int movedIndex(int i) {
+        return movedIndices[i];
+    }
+
+    public int removedCount() {
+        return removed.size();
+    }
+
+    public N removed(int i) {
+        return removed.get(i);
+    }
+
+    public int removedEdgeCount() {
+        return removedEdgeSources.size();
+    }
+
+    public N removedEdgeSource(int i) {
+        return removedEdgeSources.get(i);
+    }
+
+    public N removedEdgeSink(int i) {
+        return removedEdgeSinks.get(i);
+    }
+
+    /**
+     * @return a rough estimate of the bytes held by this delta, assuming compressed oops: the delta and its five
+     * lists, and one reference or int per slot in use or allocated.
+     */
+
+    long estimatedBytes() {
+        long slots = addedIndices.length + movedIndices.length + added.size() + moved.size() + removed.size()
+                + removedEdgeSources.size() + removedEdgeSinks.size();
+        return 32 + 5 * 40 + 2 * 16 + 4 * slots;
+    }
+
+}
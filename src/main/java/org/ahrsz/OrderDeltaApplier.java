@@ -0,0 +1,83 @@
+package org.ahrsz;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Maintains a replica of a topological order by applying deltas encoded with an OrderDeltaEncoder.
+ *
+ * Deltas must be applied in the order of their sequence numbers. A gap means that a delta was lost,
+ * in which case the replica has to be rebuilt from a full copy of the order.
+ */
+
+public class OrderDeltaApplier<N> {
+
+    private final NodeCodec<N> codec;
+    private final Map<N, Integer> node2Index;
+    private final BiConsumer<N, N> edgeRemoved;
+    private long sequence;
+
+    public OrderDeltaApplier(NodeCodec<N> codec) {
+        this(codec, new HashMap<N, Integer>(), (from, to) -> { });
+    }
+
+    /**
+     * @param codec the codec the deltas were encoded with.
+     * @param node2Index the replica of the order, updated in place.
+     * @param edgeRemoved called for every edge that was removed from the graph.
+     */
+
+    public OrderDeltaApplier(NodeCodec<N> codec, Map<N, Integer> node2Index, BiConsumer<N, N> edgeRemoved) {
+        this.codec = codec;
+        this.node2Index = node2Index;
+        this.edgeRemoved = edgeRemoved;
+        this.sequence = 0;
+    }
+
+    public Map<N, Integer> getNode2Index() {
+        return node2Index;
+    }
+
+    /**
+     * @return the sequence number of the last applied delta.
+     */
+
+    public long sequence() {
+        return sequence;
+    }
+
+    public boolean before(N n1, N n2) {
+        return this.node2Index.get(n1) < this.node2Index.get(n2);
+    }
+
+    public void apply(ByteBuffer buffer) {
+        long next = buffer.getLong();
+        if (next != sequence + 1) {
+            throw new IllegalStateException(String.format("Expected delta %d, but got %d.", sequence + 1, next));
+        }
+        int added = VarInts.getUnsigned(buffer);
+        for (int i = 0; i < added; i++) {
+            N node = codec.read(buffer);
+            node2Index.put(node, VarInts.getSigned(buffer));
+        }
+        int moved = VarInts.getUnsigned(buffer);
+        for (int i = 0; i < moved; i++) {
+            N node = codec.read(buffer);
+            node2Index.put(node, VarInts.getSigned(buffer));
+        }
+        int removed = VarInts.getUnsigned(buffer);
+        for (int i = 0; i < removed; i++) {
+            node2Index.remove(codec.read(buffer));
+        }
+        int removedEdges = VarInts.getUnsigned(buffer);
+        for (int i = 0; i < removedEdges; i++) {
+            N from = codec.read(buffer);
+            N to = codec.read(buffer);
+            edgeRemoved.accept(from, to);
+        }
+        sequence = next;
+    }
+
+}
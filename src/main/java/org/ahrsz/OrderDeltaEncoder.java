@@ -0,0 +1,73 @@
+package org.ahrsz;
+
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes OrderDeltas into a compact binary format that can be shipped to replicas and applied there
+ * with an OrderDeltaApplier.
+ *
+ * The format is the sequence number of the delta (8 bytes), followed by four sections: added nodes with their
+ * indices, moved nodes with their new indices, removed nodes, and removed edges. Each section starts with the
+ * number of its entries. Counts and indices are variable length ints, nodes are written with a NodeCodec.
+ *
+ * The encoder reuses its buffer, which only grows when a delta does not fit.
+ */
+
+public class OrderDeltaEncoder<N> {
+
+    private final NodeCodec<N> codec;
+    private ByteBuffer buffer;
+
+    public OrderDeltaEncoder(NodeCodec<N> codec) {
+        this(codec, 4096);
+    }
+
+    public OrderDeltaEncoder(NodeCodec<N> codec, int initialCapacity) {
+        this.codec = codec;
+        this.buffer = ByteBuffer.allocate(initialCapacity);
+    }
+
+    /**
+     * @return a buffer containing the encoded delta, ready to be read. It is valid until the next call of encode().
+     */
+
+    public ByteBuffer encode(OrderDelta<N> delta) {
+        while (true) {
+            // cast to Buffer, so that the class also runs on java 8 when compiled with a newer jdk.
+            ((Buffer) buffer).clear();
+            try {
+                write(delta);
+                ((Buffer) buffer).flip();
+                return buffer;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    private void write(OrderDelta<N> delta) {
+        buffer.putLong(delta.sequence());
+        VarInts.putUnsigned(buffer, delta.addedCount());
+        for (int i = 0; i < delta.addedCount(); i++) {
+            codec.write(delta.added(i), buffer);
+            VarInts.putSigned(buffer, delta.addedIndex(i));
+        }
+        VarInts.putUnsigned(buffer, delta.movedCount());
+        for (int i = 0; i < delta.movedCount(); i++) {
+            codec.write(delta.moved(i), buffer);
+            VarInts.putSigned(buffer, delta.movedIndex(i));
+        }
+        VarInts.putUnsigned(buffer, delta.removedCount());
+        for (int i = 0; i < delta.removedCount(); i++) {
+            codec.write(delta.removed(i), buffer);
+        }
+        VarInts.putUnsigned(buffer, delta.removedEdgeCount());
+        for (int i = 0; i < delta.removedEdgeCount(); i++) {
+            codec.write(delta.removedEdgeSource(i), buffer);
+            codec.write(delta.removedEdgeSink(i), buffer);
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package org.ahrsz;
+
+/**
+ * Receives the changes of the topological order after every insertion that changed it.
+ */
+
+public interface OrderDeltaListener<N> {
+
+    /**
+     * @param delta the changes of the last insertion. The delta is reused, so it must not be kept after returning.
+     */
+
+    void onDelta(OrderDelta<N> delta);
+
+}
@@ -0,0 +1,279 @@
+package org.ahrsz;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Streams the nodes of an AhrszAlgorithm in topological order, each followed by its visible outgoing edges,
+ * to a WritableByteChannel.
+ *
+ * Two formats are supported:
+ *
+ * - BINARY: the number of nodes, then for every node the node itself, its index, the number of its edges and for
+ *   every edge the successor and the weight (4 bytes). Nodes are written with a NodeCodec, counts and indices are
+ *   variable length ints as in OrderDeltaEncoder.
+ * - CSV: a header line "index,node,successor,weight", then one line per edge. A node without edges gets a line
+ *   with empty successor and weight. Nodes are written with toString(), quoted if necessary.
+ *
+ * The output is collected in a buffer of fixed size, which is written to the channel whenever it is full. The edges
+ * are visited once per node with DirectedGraph.forEachF(), so no maps or sets are built per node. The binary format
+ * collects the edges of a node in reusable arrays before writing their count, so the count always matches the
+ * edges, even on a graph whose edges decay while it is read. Apart from these arrays, one array of nodes and one
+ * array of sort keys for the whole export, the binary format does not allocate as long as the codec does not.
+ * CSV is meant for debugging and inspection and is exempt from this: every node and edge is converted with
+ * toString() and append(float), which allocate per line. Use the binary format for large or frequent exports.
+ * The algorithm must not be modified during an export, e.g. synchronize on it.
+ *
+ * @param <N> the type of the nodes.
+ */
+
+public class OrderExporter<N extends Comparable<N>> implements EdgeVisitor<N> {
+
+    public enum Format { BINARY, CSV }
+
+    private final Format format;
+    private final NodeCodec<N> codec;
+    private final ByteBuffer buffer;
+    private final StringBuilder text = new StringBuilder();
+
+    private WritableByteChannel channel;
+    private N current;
+    private int currentIndex;
+    private int edgeCount;
+    /**
+     * the edges of the current node in the binary format, grown to the largest degree seen.
+     */
+    private Object[] successors = new Object[16];
+    private float[] weights = new float[16];
+    private long exportedEdges;
+
+    /**
+     * Creates an exporter for the binary format.
+     */
+
+    public OrderExporter(NodeCodec<N> codec, int bufferSize) {
+        this(Format.BINARY, codec, bufferSize);
+    }
+
+    /**
+     * Creates an exporter for the CSV format.
+     */
+
+    public OrderExporter(int bufferSize) {
+        this(Format.CSV, null, bufferSize);
+    }
+
+    private OrderExporter(Format format, NodeCodec<N> codec, int bufferSize) {
+        this.format = format;
+        this.codec = codec;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Writes the order and the edges of @ahrsz to @channel. The channel is not closed.
+     * @return the number of exported edges.
+     */
+
+    @SuppressWarnings(value = "unchecked")
+    public long export(AhrszAlgorithm<N> ahrsz, WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.exportedEdges = 0;
+        ((Buffer) buffer).clear();
+        int size = ahrsz.node2Index.size();
+        Object[] nodes = new Object[size];
+        long[] keys = new long[size];
+        int position = 0;
+        for (Map.Entry<N, Integer> entry : ahrsz.node2Index.entrySet()) {
+            nodes[position] = entry.getKey();
+            keys[position] = ((long) entry.getValue() << 32) | position;
+            position++;
+        }
+        Arrays.sort(keys);
+        if (format == Format.BINARY) {
+            writeHeader(size);
+        } else {
+            text.setLength(0);
+            text.append("index,node,successor,weight\n");
+            writeText();
+        }
+        try {
+            for (long key : keys) {
+                current = (N) nodes[(int) key];
+                currentIndex = (int) (key >> 32);
+                if (format == Format.BINARY) {
+                    edgeCount = 0;
+                    ahrsz.directedGraph.forEachF(current, this);
+                    writeNode();
+                    for (int i = 0; i < edgeCount; i++) {
+                        writeEdge((N) successors[i], weights[i]);
+                        successors[i] = null;
+                    }
+                    exportedEdges += edgeCount;
+                } else {
+                    edgeCount = 0;
+                    ahrsz.directedGraph.forEachF(current, this);
+                    if (edgeCount == 0) writeLine(null, 0f);
+                }
+            }
+            drain();
+        } catch (ExportException e) {
+            throw (IOException) e.getCause();
+        } finally {
+            this.channel = null;
+            this.current = null;
+        }
+        return exportedEdges;
+    }
+
+    /**
+     * Called for every edge of the current node.
+     */
+
+    @Override
+    public void visit(N successor, float weight) {
+        if (format == Format.BINARY) {
+            if (edgeCount == successors.length) {
+                successors = Arrays.copyOf(successors, edgeCount * 2);
+                weights = Arrays.copyOf(weights, edgeCount * 2);
+            }
+            successors[edgeCount] = successor;
+            weights[edgeCount] = weight;
+            edgeCount++;
+            return;
+        }
+        edgeCount++;
+        exportedEdges++;
+        try {
+            writeLine(successor, weight);
+        } catch (IOException e) {
+            throw new ExportException(e);
+        }
+    }
+
+    /**
+     * Carries an IOException out of visit(), which cannot throw it.
+     */
+
+    private static class ExportException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ExportException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    private void writeHeader(int size) throws IOException {
+        ensure(5);
+        VarInts.putUnsigned(buffer, size);
+    }
+
+    private void writeNode() throws IOException {
+        int start = buffer.position();
+        try {
+            codec.write(current, buffer);
+            VarInts.putSigned(buffer, currentIndex);
+            VarInts.putUnsigned(buffer, edgeCount);
+        } catch (BufferOverflowException e) {
+            retry(start);
+            writeNode();
+        }
+    }
+
+    private void writeEdge(N successor, float weight) throws IOException {
+        int start = buffer.position();
+        try {
+            codec.write(successor, buffer);
+            buffer.putFloat(weight);
+        } catch (BufferOverflowException e) {
+            retry(start);
+            writeEdge(successor, weight);
+        }
+    }
+
+    /**
+     * Discards the incomplete record starting at @start and makes room for it.
+     */
+
+    private void retry(int start) throws IOException {
+        if (start == 0) throw new IllegalStateException("A record does not fit into the export buffer.");
+        ((Buffer) buffer).position(start);
+        drain();
+    }
+
+    private void writeLine(N successor, float weight) throws IOException {
+        text.setLength(0);
+        text.append(currentIndex).append(',');
+        appendQuoted(current);
+        text.append(',');
+        if (successor != null) {
+            appendQuoted(successor);
+            text.append(',').append(weight);
+        } else {
+            text.append(',');
+        }
+        text.append('\n');
+        writeText();
+    }
+
+    private void appendQuoted(N node) {
+        int start = text.length();
+        text.append(node);
+        boolean quote = false;
+        for (int i = start; i < text.length() && ! quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (! quote) return;
+        for (int i = text.length() - 1; i >= start; i--) {
+            if (text.charAt(i) == '"') text.insert(i, '"');
+        }
+        text.insert(start, '"').append('"');
+    }
+
+    /**
+     * Writes the text as UTF-8 into the buffer, draining it whenever a character does not fit.
+     */
+
+    private void writeText() throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            int c = text.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < text.length()) {
+                c = Character.toCodePoint((char) c, text.charAt(++i));
+            }
+            ensure(4);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (c < 0x10000) {
+                buffer.put((byte) (0xe0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else {
+                buffer.put((byte) (0xf0 | (c >> 18)));
+                buffer.put((byte) (0x80 | ((c >> 12) & 0x3f)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) drain();
+    }
+
+    private void drain() throws IOException {
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+
+}
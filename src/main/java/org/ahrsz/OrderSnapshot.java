@@ -0,0 +1,96 @@
+package org.ahrsz;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A frozen view on the topological order and the visible edges of an AhrszAlgorithm, as taken by
+ * AhrszAlgorithm.snapshot().
+ *
+ * A snapshot shares its storage with the live algorithm and with other snapshots, and is not affected by later
+ * insertions. It can be read from any thread, concurrently with ingestion. Ranks and the iteration in order are
+ * answered from a persistent order statistic tree over the indices, without sorting the nodes.
+ *
+ * @param <N> the type of the nodes.
+ */
+
+public class OrderSnapshot<N extends Comparable<N>> implements Iterable<N> {
+
+    private final long version;
+    private final PersistentMap<N, Integer> node2Index;
+    private final PersistentRankTree<N> order;
+    private final PersistentMap<N, PersistentMap<N, Float>> forward;
+    private final PersistentMap<N, PersistentMap<N, Float>> backward;
+
+    OrderSnapshot(long version, PersistentMap<N, Integer> node2Index, PersistentRankTree<N> order,
+                  PersistentMap<N, PersistentMap<N, Float>> forward,
+                  PersistentMap<N, PersistentMap<N, Float>> backward) {
+        this.version = version;
+        this.node2Index = node2Index;
+        this.order = order;
+        this.forward = forward;
+        this.backward = backward;
+    }
+
+    /**
+     * @return the number of snapshots taken before this one.
+     */
+
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        return node2Index.size();
+    }
+
+    /**
+     * @return the index of node at this version, or null if the node was not part of the order.
+     */
+
+    public Integer index(N node) {
+        return node2Index.get(node);
+    }
+
+    public boolean before(N n1, N n2) {
+        return node2Index.get(n1) < node2Index.get(n2);
+    }
+
+    /**
+     * @return the visible outgoing edges of @key at this version, or null if there are none.
+     */
+
+    public Map<N, Float> getF(N key) {
+        PersistentMap<N, Float> edges = forward.get(key);
+        return edges == null ? null : edges.asMap();
+    }
+
+    /**
+     * @return the visible incoming edges of @key at this version, or null if there are none.
+     */
+
+    public Map<N, Float> getB(N key) {
+        PersistentMap<N, Float> edges = backward.get(key);
+        return edges == null ? null : edges.asMap();
+    }
+
+    /**
+     * @return the number of nodes positioned before @node at this version, or -1 if the node was not part of the order.
+     * This takes O(log n) time.
+     */
+
+    public int rank(N node) {
+        Integer index = node2Index.get(node);
+        return index == null ? -1 : order.rank(index);
+    }
+
+    /**
+     * Iterates over the nodes in topological order.
+     */
+
+    @Override
+    public Iterator<N> iterator() {
+        return order.values();
+    }
+
+}
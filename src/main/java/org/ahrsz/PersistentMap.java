@@ -0,0 +1,347 @@
+package org.ahrsz;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A persistent hash map, implemented as a hash array mapped trie with 32 children per level.
+ *
+ * Every trie node and every map carries the edit token of the version that created it. A modification with the
+ * same token changes the nodes in place, a modification with another token copies the nodes on the path to the
+ * changed entry and shares all other nodes. So as long as a version is written, it is modified in place like a
+ * mutable map; once a new token is used for writing, the maps of the old version stay unchanged forever.
+ *
+ * Keys and values must not be null.
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ */
+
+final class PersistentMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int MAX_SHIFT = 30;
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, null, 0);
+
+    private final Object edit;
+    private Trie root;
+    private int size;
+
+    private PersistentMap(Object edit, Trie root, int size) {
+        this.edit = edit;
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings(value = "unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings(value = "unchecked")
+    V get(K key) {
+        return root == null ? null : (V) root.get(0, key.hashCode(), key);
+    }
+
+    /**
+     * @return the map with the given entry, which is this map if it was created with @edit.
+     */
+
+    PersistentMap<K, V> put(Object edit, K key, V value) {
+        boolean[] added = new boolean[1];
+        int hash = key.hashCode();
+        Trie newRoot = root == null
+                ? new Bitmap(edit, 0, new Object[0]).put(edit, 0, hash, key, value, added)
+                : root.put(edit, 0, hash, key, value, added);
+        return update(edit, newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @return the map without the given key, which is this map if it was created with @edit.
+     */
+
+    PersistentMap<K, V> remove(Object edit, K key) {
+        if (root == null) return this;
+        boolean[] removed = new boolean[1];
+        Trie newRoot = root.remove(edit, 0, key.hashCode(), key, removed);
+        if (! removed[0]) return this;
+        return update(edit, newRoot, size - 1);
+    }
+
+    private PersistentMap<K, V> update(Object edit, Trie newRoot, int newSize) {
+        if (this.edit == edit && this != EMPTY) {
+            this.root = newRoot;
+            this.size = newSize;
+            return this;
+        }
+        if (newRoot == root && newSize == size) return this;
+        return new PersistentMap<>(edit, newRoot, newSize);
+    }
+
+    @SuppressWarnings(value = "unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    /**
+     * @return a read only view on this map. The view must only be used while this map is not modified.
+     */
+
+    Map<K, V> asMap() {
+        return new AbstractMap<K, V>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            @SuppressWarnings(value = "unchecked")
+            public boolean containsKey(Object key) {
+                return PersistentMap.this.get((K) key) != null;
+            }
+
+            @Override
+            @SuppressWarnings(value = "unchecked")
+            public V get(Object key) {
+                return PersistentMap.this.get((K) key);
+            }
+
+            @Override
+            public Set<Entry<K, V>> entrySet() {
+                return new AbstractSet<Entry<K, V>>() {
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+
+                    @Override
+                    public Iterator<Entry<K, V>> iterator() {
+                        List<Entry<K, V>> entries = new ArrayList<>(size);
+                        PersistentMap.this.forEach((k, v) -> entries.add(new SimpleImmutableEntry<>(k, v)));
+                        return entries.iterator();
+                    }
+                };
+            }
+        };
+    }
+
+    private abstract static class Trie {
+
+        final Object edit;
+
+        Trie(Object edit) {
+            this.edit = edit;
+        }
+
+        abstract Object get(int shift, int hash, Object key);
+
+        abstract Trie put(Object edit, int shift, int hash, Object key, Object value, boolean[] added);
+
+        /**
+         * @return the trie without the key, or null if it became empty.
+         */
+
+        abstract Trie remove(Object edit, int shift, int hash, Object key, boolean[] removed);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+
+        /**
+         * @return a trie holding both entries, starting at the given level.
+         */
+
+        static Trie create(Object edit, int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            if (shift > MAX_SHIFT) return new Collision(edit, new Object[] { key1, value1, key2, value2 });
+            boolean[] added = new boolean[1];
+            return new Bitmap(edit, 0, new Object[0])
+                    .put(edit, shift, key1.hashCode(), key1, value1, added)
+                    .put(edit, shift, hash2, key2, value2, added);
+        }
+    }
+
+    /**
+     * A level of the trie. The array holds a pair for every set bit of the bitmap: either a key and its value,
+     * or null and the subtrie.
+     */
+
+    private static final class Bitmap extends Trie {
+
+        private int bitmap;
+        private Object[] array;
+
+        Bitmap(Object edit, int bitmap, Object[] array) {
+            super(edit);
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private Bitmap editable(Object edit) {
+            return this.edit == edit ? this : new Bitmap(edit, bitmap, array.clone());
+        }
+
+        @Override
+        Object get(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return null;
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[i];
+            if (k == null) return ((Trie) array[i + 1]).get(shift + BITS, hash, key);
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        @Override
+        Trie put(Object edit, int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] grown = new Object[array.length + 2];
+                System.arraycopy(array, 0, grown, 0, i);
+                grown[i] = key;
+                grown[i + 1] = value;
+                System.arraycopy(array, i, grown, i + 2, array.length - i);
+                Bitmap result = this.edit == edit ? this : new Bitmap(edit, bitmap, null);
+                result.bitmap = bitmap | bit;
+                result.array = grown;
+                return result;
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Trie child = ((Trie) v).put(edit, shift + BITS, hash, key, value, added);
+                if (child == v) return this;
+                return set(edit, i, null, child);
+            }
+            if (key.equals(k)) {
+                if (value == v) return this;
+                return set(edit, i, k, value);
+            }
+            added[0] = true;
+            return set(edit, i, null, create(edit, shift + BITS, k, v, hash, key, value));
+        }
+
+        private Bitmap set(Object edit, int i, Object key, Object value) {
+            Bitmap result = editable(edit);
+            result.array[i] = key;
+            result.array[i + 1] = value;
+            return result;
+        }
+
+        @Override
+        Trie remove(Object edit, int shift, int hash, Object key, boolean[] removed) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return this;
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[i];
+            if (k == null) {
+                Trie child = (Trie) array[i + 1];
+                Trie newChild = child.remove(edit, shift + BITS, hash, key, removed);
+                if (newChild == child) return this;
+                if (newChild != null) return set(edit, i, null, newChild);
+            } else if (! key.equals(k)) {
+                return this;
+            } else {
+                removed[0] = true;
+            }
+            if (bitmap == bit) return null;
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 2, shrunk, i, array.length - i - 2);
+            Bitmap result = this.edit == edit ? this : new Bitmap(edit, bitmap, null);
+            result.bitmap = bitmap ^ bit;
+            result.array = shrunk;
+            return result;
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Trie) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * The entries of keys whose hashes are equal, as key value pairs.
+     */
+
+    private static final class Collision extends Trie {
+
+        private Object[] array;
+
+        Collision(Object edit, Object[] array) {
+            super(edit);
+            this.array = array;
+        }
+
+        private int find(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) return i;
+            }
+            return -1;
+        }
+
+        @Override
+        Object get(int shift, int hash, Object key) {
+            int i = find(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Trie put(Object edit, int shift, int hash, Object key, Object value, boolean[] added) {
+            int i = find(key);
+            if (i >= 0 && array[i + 1] == value) return this;
+            Object[] changed;
+            if (i < 0) {
+                added[0] = true;
+                changed = new Object[array.length + 2];
+                System.arraycopy(array, 0, changed, 0, array.length);
+                changed[array.length] = key;
+                changed[array.length + 1] = value;
+            } else {
+                changed = this.edit == edit ? array : array.clone();
+                changed[i + 1] = value;
+            }
+            if (this.edit != edit) return new Collision(edit, changed);
+            this.array = changed;
+            return this;
+        }
+
+        @Override
+        Trie remove(Object edit, int shift, int hash, Object key, boolean[] removed) {
+            int i = find(key);
+            if (i < 0) return this;
+            removed[0] = true;
+            if (array.length == 2) return null;
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 2, shrunk, i, array.length - i - 2);
+            if (this.edit != edit) return new Collision(edit, shrunk);
+            this.array = shrunk;
+            return this;
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+
+}
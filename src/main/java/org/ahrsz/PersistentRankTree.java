@@ -0,0 +1,230 @@
+package org.ahrsz;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A persistent order statistic tree from distinct int keys to values, implemented as a treap whose nodes count
+ * the nodes below them. rank() and all modifications take O(log n) expected time.
+ *
+ * The priority of a tree node is derived from a hash of its key, so that no random state has to be kept. Edit
+ * tokens work as in PersistentMap: a modification with the token of a tree node changes it in place, a modification
+ * with another token copies the nodes on the path to the change.
+ *
+ * Values must not be null.
+ *
+ * @param <V> the type of the values.
+ */
+
+final class PersistentRankTree<V> {
+
+    private static final PersistentRankTree<?> EMPTY = new PersistentRankTree<>(null, null);
+
+    private final Object edit;
+    private Node root;
+
+    private PersistentRankTree(Object edit, Node root) {
+        this.edit = edit;
+        this.root = root;
+    }
+
+    @SuppressWarnings(value = "unchecked")
+    static <V> PersistentRankTree<V> empty() {
+        return (PersistentRankTree<V>) EMPTY;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    @SuppressWarnings(value = "unchecked")
+    V get(int key) {
+        Node node = root;
+        while (node != null && node.key != key) {
+            node = key < node.key ? node.left : node.right;
+        }
+        return node == null ? null : (V) node.value;
+    }
+
+    /**
+     * @return the number of keys smaller than @key.
+     */
+
+    int rank(int key) {
+        int result = 0;
+        Node node = root;
+        while (node != null) {
+            if (key <= node.key) {
+                node = node.left;
+            } else {
+                result += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the tree with the given entry, which is this tree if it was created with @edit.
+     */
+
+    PersistentRankTree<V> put(Object edit, int key, V value) {
+        return update(edit, insert(edit, root, key, value));
+    }
+
+    /**
+     * @return the tree without @key, which is this tree if it was created with @edit or does not contain the key.
+     */
+
+    PersistentRankTree<V> remove(Object edit, int key) {
+        if (get(key) == null) return this;
+        return update(edit, delete(edit, root, key));
+    }
+
+    /**
+     * @return the values in the order of their keys.
+     */
+
+    Iterator<V> values() {
+        final ArrayDeque<Node> path = new ArrayDeque<>();
+        for (Node node = root; node != null; node = node.left) {
+            path.push(node);
+        }
+        return new Iterator<V>() {
+            @Override
+            public boolean hasNext() {
+                return ! path.isEmpty();
+            }
+
+            @Override
+            @SuppressWarnings(value = "unchecked")
+            public V next() {
+                if (path.isEmpty()) throw new NoSuchElementException();
+                Node next = path.pop();
+                for (Node node = next.right; node != null; node = node.left) {
+                    path.push(node);
+                }
+                return (V) next.value;
+            }
+        };
+    }
+
+    private PersistentRankTree<V> update(Object edit, Node newRoot) {
+        if (this.edit == edit) {
+            root = newRoot;
+            return this;
+        }
+        return new PersistentRankTree<>(edit, newRoot);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int priority(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static Node editable(Object edit, Node node) {
+        return node.edit == edit ? node : new Node(edit, node);
+    }
+
+    private static Node insert(Object edit, Node node, int key, Object value) {
+        if (node == null) return new Node(edit, key, value);
+        Node result = editable(edit, node);
+        if (key == node.key) {
+            result.value = value;
+            return result;
+        }
+        if (key < node.key) {
+            result.left = insert(edit, node.left, key, value);
+            if (priority(result.left.key) > priority(result.key)) return rotateRight(result);
+        } else {
+            result.right = insert(edit, node.right, key, value);
+            if (priority(result.right.key) > priority(result.key)) return rotateLeft(result);
+        }
+        result.size = size(result.left) + size(result.right) + 1;
+        return result;
+    }
+
+    private static Node delete(Object edit, Node node, int key) {
+        if (key == node.key) return merge(edit, node.left, node.right);
+        Node result = editable(edit, node);
+        if (key < node.key) {
+            result.left = delete(edit, node.left, key);
+        } else {
+            result.right = delete(edit, node.right, key);
+        }
+        result.size--;
+        return result;
+    }
+
+    /**
+     * @return the union of two trees, where all keys of @low are smaller than all keys of @high.
+     */
+
+    private static Node merge(Object edit, Node low, Node high) {
+        if (low == null) return high;
+        if (high == null) return low;
+        Node result;
+        if (priority(low.key) > priority(high.key)) {
+            result = editable(edit, low);
+            result.right = merge(edit, low.right, high);
+        } else {
+            result = editable(edit, high);
+            result.left = merge(edit, low, high.left);
+        }
+        result.size = size(result.left) + size(result.right) + 1;
+        return result;
+    }
+
+    /**
+     * Both rotations expect @node and the child they lift to be editable with the same token.
+     */
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        node.size = size(node.left) + size(node.right) + 1;
+        left.right = node;
+        left.size = size(left.left) + node.size + 1;
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        node.size = size(node.left) + size(node.right) + 1;
+        right.left = node;
+        right.size = size(right.right) + node.size + 1;
+        return right;
+    }
+
+    private static final class Node {
+        final Object edit;
+        final int key;
+        Object value;
+        int size;
+        Node left;
+        Node right;
+
+        Node(Object edit, int key, Object value) {
+            this.edit = edit;
+            this.key = key;
+            this.value = value;
+            this.size = 1;
+        }
+
+        Node(Object edit, Node original) {
+            this.edit = edit;
+            this.key = original.key;
+            this.value = original.value;
+            this.size = original.size;
+            this.left = original.left;
+            this.right = original.right;
+        }
+    }
+
+}
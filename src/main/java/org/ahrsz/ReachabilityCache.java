@@ -0,0 +1,204 @@
+package org.ahrsz;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A bounded LRU cache of answers to reachability queries, see AhrszAlgorithm.reachable().
+ *
+ * Entries are invalidated selectively with the help of the topological order. A path from x to y only passes
+ * nodes positioned between x and y, so:
+ *
+ * - a new edge from u to v can only make y reachable from x if index(x) <= index(u) and index(v) <= index(y),
+ *   using the indices after the insertion. Only negative entries are affected.
+ * - removing edges between nodes positioned within [low, high] can only make y unreachable from x
+ *   if index(x) <= high and low <= index(y), using the indices before the removal. Only positive entries are affected.
+ *
+ * Every entry remembers the current indices of its nodes, and the entries of each answer are kept in a TreeMap by
+ * the index of their source. Invalidation therefore only visits the entries whose source lies in the affected range.
+ * The algorithm reports every index change with indexChanged(), which moves the entries of the node, and every
+ * removed node with nodeRemoved(), which drops them.
+ *
+ * @param <N> the type of the nodes.
+ */
+
+class ReachabilityCache<N> {
+
+    private static final class Query {
+        final Object from;
+        final Object to;
+        int fromIndex;
+        int toIndex;
+        boolean answer;
+
+        Query(Object from, Object to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (! (other instanceof Query)) return false;
+            Query o = (Query) other;
+            return from.equals(o.from) && to.equals(o.to);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * from.hashCode() + to.hashCode();
+        }
+    }
+
+    private final LinkedHashMap<Query, Query> answers;
+    private final TreeMap<Integer, Set<Query>> positiveByFrom = new TreeMap<>();
+    private final TreeMap<Integer, Set<Query>> negativeByFrom = new TreeMap<>();
+    /**
+     * the entries of every node that is the source or the sink of a cached query.
+     */
+    private final HashMap<Object, Set<Query>> byNode = new HashMap<>();
+
+    ReachabilityCache(final int capacity) {
+        this.answers = new LinkedHashMap<Query, Query>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Query, Query> eldest) {
+                if (size() <= capacity) return false;
+                unlink(eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    private TreeMap<Integer, Set<Query>> byFrom(boolean answer) {
+        return answer ? positiveByFrom : negativeByFrom;
+    }
+
+    private static <K> void add(Map<K, Set<Query>> index, K key, Query query) {
+        Set<Query> queries = index.get(key);
+        if (queries == null) {
+            queries = new HashSet<>();
+            index.put(key, queries);
+        }
+        queries.add(query);
+    }
+
+    private static <K> void remove(Map<K, Set<Query>> index, K key, Query query) {
+        Set<Query> queries = index.get(key);
+        if (queries == null) return;
+        queries.remove(query);
+        if (queries.isEmpty()) index.remove(key);
+    }
+
+    /**
+     * Removes the entry from all indices but the LRU map.
+     */
+
+    private void unlink(Query query) {
+        remove(byFrom(query.answer), query.fromIndex, query);
+        remove(byNode, query.from, query);
+        remove(byNode, query.to, query);
+    }
+
+    Boolean get(N from, N to) {
+        Query query = answers.get(new Query(from, to));
+        return query == null ? null : query.answer;
+    }
+
+    void put(N from, int fromIndex, N to, int toIndex, boolean answer) {
+        Query query = new Query(from, to);
+        Query previous = answers.remove(query);
+        if (previous != null) unlink(previous);
+        query.fromIndex = fromIndex;
+        query.toIndex = toIndex;
+        query.answer = answer;
+        add(byFrom(answer), fromIndex, query);
+        add(byNode, from, query);
+        add(byNode, to, query);
+        answers.put(query, query);
+    }
+
+    /**
+     * Drops the negative entries that a new edge from the node at @fromIndex to the node at @toIndex may have
+     * made reachable.
+     */
+
+    void edgeAdded(int fromIndex, int toIndex) {
+        invalidate(false, fromIndex, toIndex);
+    }
+
+    /**
+     * Drops the positive entries whose paths may have used a removed edge between nodes positioned within
+     * [low, high].
+     */
+
+    void edgesRemoved(int low, int high) {
+        invalidate(true, high, low);
+    }
+
+    /**
+     * Removes the entries with the given answer for all queries from x to y with index(x) <= @maxFrom
+     * and index(y) >= @minTo.
+     */
+
+    private void invalidate(boolean answer, int maxFrom, int minTo) {
+        TreeMap<Integer, Set<Query>> byFrom = byFrom(answer);
+        if (byFrom.isEmpty()) return;
+        List<Query> affected = new ArrayList<>();
+        for (Set<Query> queries : byFrom.headMap(maxFrom, true).values()) {
+            for (Query query : queries) {
+                if (query.toIndex >= minTo) affected.add(query);
+            }
+        }
+        for (Query query : affected) {
+            answers.remove(query);
+            unlink(query);
+        }
+    }
+
+    /**
+     * Moves the entries of @node to its new index.
+     */
+
+    void indexChanged(Object node, int index) {
+        Set<Query> queries = byNode.get(node);
+        if (queries == null) return;
+        for (Query query : queries) {
+            if (query.from.equals(node) && query.fromIndex != index) {
+                remove(byFrom(query.answer), query.fromIndex, query);
+                query.fromIndex = index;
+                add(byFrom(query.answer), index, query);
+            }
+            if (query.to.equals(node)) query.toIndex = index;
+        }
+    }
+
+    /**
+     * Drops the entries of a node that left the order.
+     */
+
+    void nodeRemoved(Object node) {
+        Set<Query> queries = byNode.get(node);
+        if (queries == null) return;
+        for (Query query : new ArrayList<>(queries)) {
+            answers.remove(query);
+            unlink(query);
+        }
+    }
+
+    void clear() {
+        answers.clear();
+        positiveByFrom.clear();
+        negativeByFrom.clear();
+        byNode.clear();
+    }
+
+    int size() {
+        return answers.size();
+    }
+
+}
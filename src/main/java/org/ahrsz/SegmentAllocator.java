@@ -0,0 +1,47 @@
+package org.ahrsz;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Allocates the zeroed memory segments used by OffHeapGraph.
+ */
+
+public interface SegmentAllocator {
+
+    ByteBuffer allocate(int bytes);
+
+    /**
+     * Allocates segments outside of the java heap with ByteBuffer.allocateDirect().
+     */
+
+    static SegmentAllocator direct() {
+        return ByteBuffer::allocateDirect;
+    }
+
+    /**
+     * Allocates segments as memory mapped files in the given directory, so that the operating system
+     * can page them out. The files are deleted right after mapping them.
+     */
+
+    static SegmentAllocator mapped(final File directory) {
+        return bytes -> {
+            try {
+                File file = File.createTempFile("ahrsz", ".segment", directory);
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(bytes);
+                    return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                } finally {
+                    file.delete();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,335 @@
+package org.ahrsz;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains topological orders of one weighted graph at several minimum weights, like one AhrszAlgorithm over a
+ * MinWeightHashMapGraph per minimum weight, but storing every edge only once.
+ *
+ * The summed up weights of the inserted edges are kept in a single adjacency store. Every view on the store has its
+ * own minimum weight and its own AhrszAlgorithm. Cycles are removed per view: a view records by how much it
+ * diminished the edges of its cycles, and sees the stored weight minus that reduction. The reductions are only
+ * kept for edges that have been part of a removed cycle.
+ *
+ * Inserting an edge updates the stored weight once. Only the views in which the edge becomes visible reorder;
+ * a view in which the edge was visible already, or stays invisible, is not touched. Every view orders only the
+ * nodes of the edges that have been visible in it.
+ *
+ * The views are only handed out as read-only Orders. All changes go through addEdge() and removeNode() of the
+ * ThresholdGraph, which keeps the store and all views in sync.
+ *
+ * @param <N> the type of the nodes.
+ */
+
+public class ThresholdGraph<N extends Comparable<N>> {
+
+    /**
+     * Read access to the topological order of one view.
+     */
+
+    public static final class Order<N extends Comparable<N>> {
+
+        private final float minWeight;
+        final AhrszAlgorithm<N> ahrsz;
+
+        Order(float minWeight, AhrszAlgorithm<N> ahrsz) {
+            this.minWeight = minWeight;
+            this.ahrsz = ahrsz;
+        }
+
+        public float minWeight() {
+            return minWeight;
+        }
+
+        /**
+         * @return the position of @node in the order of the view, or null if the view does not order it.
+         */
+
+        public Integer index(N node) {
+            return ahrsz.node2Index.get(node);
+        }
+
+        public boolean before(N n1, N n2) {
+            return ahrsz.before(n1, n2);
+        }
+
+        /**
+         * @return true if and only if there is a path of edges from @from to @to that are visible in the view.
+         */
+
+        public boolean reachable(N from, N to) {
+            return ahrsz.reachable(from, to);
+        }
+
+        public OrderSnapshot<N> snapshot() {
+            return ahrsz.snapshot();
+        }
+    }
+
+    private final HashMap<N, HashMap<N, Float>> forward = new HashMap<>();
+    private final HashMap<N, HashMap<N, Float>> backward = new HashMap<>();
+    private final List<View> views = new ArrayList<>();
+    private final List<Order<N>> orders = new ArrayList<>();
+    private boolean[] visible = new boolean[0];
+
+    /**
+     * Adds a view with the given minimum weight, which orders all edges inserted so far that are heavier.
+     * @return the order of the view.
+     */
+
+    public Order<N> addView(float minWeight) throws InvalidExpansionStateException, InvalidAhrszStateException {
+        View view = new View(minWeight);
+        AhrszAlgorithm<N> ahrsz = new AhrszAlgorithm<>(view);
+        Order<N> order = new Order<>(minWeight, ahrsz);
+        views.add(view);
+        orders.add(order);
+        visible = new boolean[views.size()];
+        // the stored edges are revealed to the new view one by one, as if they were inserted.
+        view.hidden = new HashMap<>();
+        for (Map.Entry<N, HashMap<N, Float>> outgoing : forward.entrySet()) {
+            view.hidden.put(outgoing.getKey(), new HashSet<>(outgoing.getValue().keySet()));
+        }
+        for (Map.Entry<N, HashMap<N, Float>> outgoing : forward.entrySet()) {
+            N from = outgoing.getKey();
+            for (N to : outgoing.getValue().keySet()) {
+                view.hidden.get(from).remove(to);
+                if (view.hasEdge(from, to)) ahrsz.edgeAdded(from, to);
+            }
+        }
+        view.hidden = null;
+        return order;
+    }
+
+    /**
+     * @return the order of the i-th added view.
+     */
+
+    public Order<N> view(int i) {
+        return orders.get(i);
+    }
+
+    public int views() {
+        return views.size();
+    }
+
+    /**
+     * Adds the weight to the stored weight of the edge, and reorders the views in which the edge becomes visible.
+     */
+
+    public void addEdge(N from, N to, float weight) throws InvalidExpansionStateException, InvalidAhrszStateException {
+        if (weight < 0f) throw new RuntimeException("Negative weights are not supported.");
+        if (from.equals(to)) return;
+        for (int i = 0; i < views.size(); i++) {
+            visible[i] = views.get(i).hasEdge(from, to);
+        }
+        add(forward, from, to, weight);
+        add(backward, to, from, weight);
+        for (int i = 0; i < views.size(); i++) {
+            if (! visible[i] && views.get(i).hasEdge(from, to)) orders.get(i).ahrsz.edgeAdded(from, to);
+        }
+    }
+
+    public void addEdge(N from, N to, double weight) throws InvalidExpansionStateException, InvalidAhrszStateException {
+        this.addEdge(from, to, (float) weight);
+    }
+
+    /**
+     * Removes the node with all its edges from the store and from all views.
+     */
+
+    public void removeNode(N node) {
+        for (Order<N> order : orders) {
+            order.ahrsz.removeNode(node);
+        }
+        HashMap<N, Float> outgoing = forward.remove(node);
+        if (outgoing != null) {
+            for (N successor : outgoing.keySet()) {
+                backward.get(successor).remove(node);
+            }
+        }
+        HashMap<N, Float> incoming = backward.remove(node);
+        if (incoming != null) {
+            for (N predecessor : incoming.keySet()) {
+                forward.get(predecessor).remove(node);
+            }
+        }
+    }
+
+    private static <N> void add(HashMap<N, HashMap<N, Float>> edges, N key, N neighbour, float weight) {
+        HashMap<N, Float> neighbours = edges.get(key);
+        if (neighbours == null) {
+            neighbours = new HashMap<>();
+            edges.put(key, neighbours);
+        }
+        Float original = neighbours.get(neighbour);
+        neighbours.put(neighbour, original == null ? weight : original + weight);
+    }
+
+    private static <N> float get(HashMap<N, HashMap<N, Float>> edges, N key, N neighbour) {
+        HashMap<N, Float> neighbours = edges.get(key);
+        if (neighbours == null) return 0f;
+        Float weight = neighbours.get(neighbour);
+        return weight == null ? 0f : weight;
+    }
+
+    /**
+     * The graph at one minimum weight. Edges are added through ThresholdGraph.addEdge() only.
+     */
+
+    private class View implements DirectedGraph<N> {
+
+        private final float minWeight;
+        /**
+         * by how much the removed cycles diminished the edges, from source to sink.
+         */
+        private final HashMap<N, HashMap<N, Float>> reductions = new HashMap<>();
+        /**
+         * the stored edges that have not been revealed to this view yet, null once all are.
+         */
+        private HashMap<N, HashSet<N>> hidden;
+
+        View(float minWeight) {
+            this.minWeight = minWeight;
+        }
+
+        private float weight(N from, N to, float stored) {
+            if (hidden != null && hidden.containsKey(from) && hidden.get(from).contains(to)) {
+                return Float.NEGATIVE_INFINITY;
+            }
+            return stored - get(reductions, from, to);
+        }
+
+        @Override
+        public HashMap<N, Float> getF(N key) {
+            HashMap<N, Float> result = new HashMap<>();
+            HashMap<N, Float> candidates = forward.get(key);
+            if (candidates != null) {
+                for (Map.Entry<N, Float> edge : candidates.entrySet()) {
+                    float weight = weight(key, edge.getKey(), edge.getValue());
+                    if (weight > minWeight) result.put(edge.getKey(), weight);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public HashMap<N, Float> getB(N key) {
+            HashMap<N, Float> result = new HashMap<>();
+            HashMap<N, Float> candidates = backward.get(key);
+            if (candidates != null) {
+                for (Map.Entry<N, Float> edge : candidates.entrySet()) {
+                    float weight = weight(edge.getKey(), key, edge.getValue());
+                    if (weight > minWeight) result.put(edge.getKey(), weight);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void forEachF(N key, EdgeVisitor<N> visitor) {
+            HashMap<N, Float> candidates = forward.get(key);
+            if (candidates == null) return;
+            for (Map.Entry<N, Float> edge : candidates.entrySet()) {
+                float weight = weight(key, edge.getKey(), edge.getValue());
+                if (weight > minWeight) visitor.visit(edge.getKey(), weight);
+            }
+        }
+
+        @Override
+        public void forEachB(N key, EdgeVisitor<N> visitor) {
+            HashMap<N, Float> candidates = backward.get(key);
+            if (candidates == null) return;
+            for (Map.Entry<N, Float> edge : candidates.entrySet()) {
+                float weight = weight(edge.getKey(), key, edge.getValue());
+                if (weight > minWeight) visitor.visit(edge.getKey(), weight);
+            }
+        }
+
+        /**
+         * @return true if @key has a visible edge in the given direction, stopping at the first one.
+         */
+
+        private boolean hasVisible(N key, boolean outgoing) {
+            HashMap<N, Float> candidates = (outgoing ? forward : backward).get(key);
+            if (candidates == null) return false;
+            for (Map.Entry<N, Float> edge : candidates.entrySet()) {
+                float weight = outgoing ? weight(key, edge.getKey(), edge.getValue())
+                        : weight(edge.getKey(), key, edge.getValue());
+                if (weight > minWeight) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void addEdge(N from, N to, float weight) {
+            throw new UnsupportedOperationException("Edges are added through ThresholdGraph.addEdge().");
+        }
+
+        /**
+         * Diminishes the edges of the cycle within this view by the weight of its lightest edge.
+         */
+
+        @Override
+        public void removeCycle(List<N> cycle) {
+            float decrement = Float.MAX_VALUE;
+            for (int i = 0; i < cycle.size(); i++) {
+                N from = cycle.get(i);
+                N to = cycle.get((i + 1) % cycle.size());
+                decrement = Math.min(decrement, weight(from, to, get(forward, from, to)));
+            }
+            for (int i = 0; i < cycle.size(); i++) {
+                add(reductions, cycle.get(i), cycle.get((i + 1) % cycle.size()), decrement);
+            }
+        }
+
+        @Override
+        public boolean hasEdge(N from, N to) {
+            return getWeight(from, to) != null;
+        }
+
+        @Override
+        public Float getWeight(N from, N to) {
+            HashMap<N, Float> neighbours = forward.get(from);
+            Float stored = neighbours == null ? null : neighbours.get(to);
+            if (stored == null) return null;
+            float weight = weight(from, to, stored);
+            return weight > minWeight ? weight : null;
+        }
+
+        /**
+         * Drops the reductions of the node. The stored edges are removed by ThresholdGraph.removeNode().
+         */
+
+        @Override
+        public void removeNode(N node) {
+            reductions.remove(node);
+            for (HashMap<N, Float> reduced : reductions.values()) {
+                reduced.remove(node);
+            }
+        }
+
+        @Override
+        public Set<N> getForwardKeys() {
+            Set<N> result = new HashSet<>();
+            for (N key : forward.keySet()) {
+                if (hasVisible(key, true)) result.add(key);
+            }
+            return result;
+        }
+
+        @Override
+        public Set<N> getBackwardKeys() {
+            Set<N> result = new HashSet<>();
+            for (N key : backward.keySet()) {
+                if (hasVisible(key, false)) result.add(key);
+            }
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.ahrsz;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Variable length encoding of ints, 7 bits per byte. Signed values are zigzag encoded first,
+ * so that small negative values are short as well.
+ */
+
+class VarInts {
+
+    static void putUnsigned(ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getUnsigned(ByteBuffer buffer) {
+        int result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            result |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    static void putSigned(ByteBuffer buffer, int value) {
+        putUnsigned(buffer, (value << 1) ^ (value >> 31));
+    }
+
+    static int getSigned(ByteBuffer buffer) {
+        int value = getUnsigned(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
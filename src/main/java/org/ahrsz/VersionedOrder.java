@@ -0,0 +1,117 @@
+package org.ahrsz;
+
+import java.util.Map;
+
+/**
+ * Mirrors the topological order and the visible edges of an AhrszAlgorithm in persistent maps, so that
+ * snapshots can be taken in constant time.
+ *
+ * Between two snapshots the maps are modified in place. Taking a snapshot hands out the current maps and switches
+ * to a new edit token, so that later modifications copy the few trie nodes they touch instead of changing the
+ * ones the snapshot sees.
+ *
+ * Besides the map from nodes to indices, the order is kept as a PersistentRankTree from indices to nodes, so that
+ * a snapshot answers rank queries and iterates in order without sorting its nodes.
+ *
+ * @param <N> the type of the nodes.
+ */
+
+class VersionedOrder<N extends Comparable<N>> {
+
+    private final DirectedGraph<N> directedGraph;
+    private Object edit = new Object();
+    private long version;
+    private PersistentMap<N, Integer> node2Index = PersistentMap.empty();
+    private PersistentRankTree<N> order = PersistentRankTree.empty();
+    private PersistentMap<N, PersistentMap<N, Float>> forward = PersistentMap.empty();
+    private PersistentMap<N, PersistentMap<N, Float>> backward = PersistentMap.empty();
+
+    /**
+     * Copies the current order and all visible edges once.
+     */
+
+    VersionedOrder(DirectedGraph<N> directedGraph, Map<N, Integer> order) {
+        this.directedGraph = directedGraph;
+        for (Map.Entry<N, Integer> entry : order.entrySet()) {
+            indexChanged(entry.getKey(), entry.getValue());
+        }
+        for (final N node : order.keySet()) {
+            directedGraph.forEachF(node, (successor, weight) -> setEdge(node, successor, weight));
+        }
+    }
+
+    /**
+     * While the algorithm switches positions, a node may take over an index before its previous owner has moved on.
+     * The entry of the previous owner is then overwritten, and is not removed when that owner reports its new index.
+     */
+
+    void indexChanged(N node, int index) {
+        Integer previous = node2Index.get(node);
+        if (previous != null) removeFromOrder(node, previous);
+        node2Index = node2Index.put(edit, node, index);
+        order = order.put(edit, index, node);
+    }
+
+    private void removeFromOrder(N node, int index) {
+        if (node.equals(order.get(index))) order = order.remove(edit, index);
+    }
+
+    void nodeRemoved(N node) {
+        Integer index = node2Index.get(node);
+        if (index != null) removeFromOrder(node, index);
+        node2Index = node2Index.remove(edit, node);
+        PersistentMap<N, Float> outgoing = forward.get(node);
+        if (outgoing != null) {
+            outgoing.forEach((successor, weight) -> backward = remove(backward, successor, node));
+            forward = forward.remove(edit, node);
+        }
+        PersistentMap<N, Float> incoming = backward.get(node);
+        if (incoming != null) {
+            incoming.forEach((predecessor, weight) -> forward = remove(forward, predecessor, node));
+            backward = backward.remove(edit, node);
+        }
+    }
+
+    /**
+     * Takes over the current weight of the edge from @from to @to, which is removed if it is no longer visible.
+     */
+
+    void edgeChanged(N from, N to) {
+        Float weight = directedGraph.getWeight(from, to);
+        if (weight == null) {
+            forward = remove(forward, from, to);
+            backward = remove(backward, to, from);
+        } else {
+            setEdge(from, to, weight);
+        }
+    }
+
+    private void setEdge(N from, N to, float weight) {
+        forward = put(forward, from, to, weight);
+        backward = put(backward, to, from, weight);
+    }
+
+    private PersistentMap<N, PersistentMap<N, Float>> put(
+            PersistentMap<N, PersistentMap<N, Float>> edges, N key, N neighbour, Float weight) {
+        PersistentMap<N, Float> neighbours = edges.get(key);
+        if (neighbours == null) neighbours = PersistentMap.empty();
+        PersistentMap<N, Float> changed = neighbours.put(edit, neighbour, weight);
+        return changed == neighbours ? edges : edges.put(edit, key, changed);
+    }
+
+    private PersistentMap<N, PersistentMap<N, Float>> remove(
+            PersistentMap<N, PersistentMap<N, Float>> edges, N key, N neighbour) {
+        PersistentMap<N, Float> neighbours = edges.get(key);
+        if (neighbours == null) return edges;
+        PersistentMap<N, Float> changed = neighbours.remove(edit, neighbour);
+        if (changed.size() == 0) return edges.remove(edit, key);
+        return changed == neighbours ? edges : edges.put(edit, key, changed);
+    }
+
+    OrderSnapshot<N> snapshot() {
+        OrderSnapshot<N> snapshot = new OrderSnapshot<>(version++, node2Index, order, forward, backward);
+        edit = new Object();
+        return snapshot;
+    }
+
+}
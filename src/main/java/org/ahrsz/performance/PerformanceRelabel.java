@@ -0,0 +1,73 @@
+package org.ahrsz.performance;
+
+import org.ahrsz.AdaptiveGraph;
+import org.ahrsz.AhrszAlgorithm;
+import org.ahrsz.InvalidAhrszStateException;
+import org.ahrsz.InvalidExpansionStateException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the effect of AdaptiveGraph.relabel() on the latency of reorderings.
+ *
+ * The graph consists of chains of CHAIN nodes. The edges of the chains are inserted in random order, so the nodes
+ * get their ids, and their neighbour arrays are allocated, in an order unrelated to the topological order.
+ * After most edges have been inserted, one copy of the graph is relabelled, and then both copies receive the
+ * remaining edges. Each of them joins two pieces of a chain and moves one of the pieces, so the reorderings visit
+ * runs of nodes that are adjacent in the topological order. Chains keep the number of paths linear, which keeps
+ * the expansion cheap enough for large graphs.
+ *
+ * The gain is small, about 280 instead of 300 us per insert: relabelling makes the neighbour arrays contiguous,
+ * but every visited node is still looked up in the ids of the AdaptiveGraph and in AhrszAlgorithm.node2Index,
+ * and these hash lookups make up most of the remaining cost.
+ *
+ * The JVM does not expose hardware counters, so cache misses are measured from the outside: run with
+ * -Dahrsz.relabel=true or false to measure only one copy, under perf stat -e cache-misses,cache-references.
+ */
+
+public class PerformanceRelabel {
+
+    static final int NODES = 1000000;
+    static final int CHAIN = 1000;
+    static final double MEASURED = 0.05;
+
+    @Test
+    public void test() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        String only = System.getProperty("ahrsz.relabel");
+        for (boolean relabel : new boolean[] { false, true }) {
+            if (only != null && Boolean.parseBoolean(only) != relabel) continue;
+            System.err.println(String.format("relabel: %b, %f us per insert", relabel, measure(relabel)));
+        }
+    }
+
+    private double measure(boolean relabel) throws InvalidExpansionStateException, InvalidAhrszStateException {
+        List<Integer> edges = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            if (i % CHAIN != 0) edges.add(i);
+        }
+        Collections.shuffle(edges, new Random(1));
+        AdaptiveGraph<Integer> graph = new AdaptiveGraph<>();
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        int measured = (int) (edges.size() * MEASURED);
+        int built = edges.size() - measured;
+        // the edge i connects the node i - 1 with the node i.
+        for (int i = 0; i < built; i++) {
+            ahrsz.addEdge(edges.get(i) - 1, edges.get(i), 1f);
+        }
+        if (relabel) {
+            long start = System.nanoTime();
+            graph.relabel(ahrsz.node2Index);
+            System.err.println(String.format("relabelling took %f ms", (System.nanoTime() - start) / 1000000.0));
+        }
+        long start = System.nanoTime();
+        for (int i = built; i < edges.size(); i++) {
+            ahrsz.addEdge(edges.get(i) - 1, edges.get(i), 1f);
+        }
+        return (System.nanoTime() - start) / (double) measured / 1000.0;
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.ahrsz.performance;
+
+import org.ahrsz.AhrszAlgorithm;
+import org.ahrsz.AhrszClient;
+import org.ahrsz.AhrszServer;
+import org.ahrsz.HashMapGraph;
+import org.ahrsz.NodeCodec;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates load on an AhrszServer from several client threads on the same machine, and reports the throughput.
+ *
+ * Every client sends rounds of DEPTH pipelined requests, of which INSERTS percent are insertions and the rest are
+ * equally split between before() and rank() queries, and then receives the responses of the round. The inserted
+ * edges follow a hidden order of the nodes, so no cycles are created, and point from a node to one of its close
+ * successors in that order, which keeps the reorderings short.
+ *
+ * Run with -Dahrsz.clients, -Dahrsz.depth and -Dahrsz.inserts to change the load, e.g. -Dahrsz.depth=1 to measure
+ * without pipelining.
+ */
+
+public class PerformanceServer {
+
+    static final int NODES = 100000;
+    static final int SPAN = 8;
+    static final long DURATION_MILLIS = 5000;
+
+    @Test
+    public void test() throws Exception {
+        int clients = Integer.getInteger("ahrsz.clients", 4);
+        int depth = Integer.getInteger("ahrsz.depth", 128);
+        int inserts = Integer.getInteger("ahrsz.inserts", 20);
+        ExecutorService connections = Executors.newCachedThreadPool();
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>());
+        AhrszServer<Integer> server = new AhrszServer<>(ahrsz, NodeCodec.integers(), 0, connections);
+        AtomicLong requests = new AtomicLong();
+        long deadline = System.currentTimeMillis() + DURATION_MILLIS;
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            final Random random = new Random(c);
+            Thread thread = new Thread(() -> {
+                try (AhrszClient<Integer> client = new AhrszClient<>(NodeCodec.integers(), server.port())) {
+                    byte[] kinds = new byte[depth];
+                    while (System.currentTimeMillis() < deadline) {
+                        for (int i = 0; i < depth; i++) {
+                            int node = random.nextInt(NODES - SPAN);
+                            int kind = random.nextInt(100);
+                            if (kind < inserts) {
+                                client.sendAddEdge(node, node + 1 + random.nextInt(SPAN), 1f);
+                                kinds[i] = 0;
+                            } else if (kind % 2 == 0) {
+                                client.sendBefore(node, node + 1 + random.nextInt(SPAN));
+                                kinds[i] = 1;
+                            } else {
+                                client.sendRank(node);
+                                kinds[i] = 2;
+                            }
+                        }
+                        for (int i = 0; i < depth; i++) {
+                            if (kinds[i] == 0) client.receiveAddEdge();
+                            else if (kinds[i] == 1) client.receiveBefore();
+                            else client.receiveRank();
+                        }
+                        requests.addAndGet(depth);
+                    }
+                    client.flush();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads.add(thread);
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.println(String.format("clients: %d, depth: %d, inserts: %d%%, %f requests per second, %d nodes",
+                clients, depth, inserts, requests.get() / seconds, server.snapshot().size()));
+        server.close();
+        connections.shutdown();
+    }
+
+}
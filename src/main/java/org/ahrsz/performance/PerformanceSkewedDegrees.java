@@ -0,0 +1,71 @@
+package org.ahrsz.performance;
+
+import org.ahrsz.AdaptiveGraph;
+import org.ahrsz.AhrszAlgorithm;
+import org.ahrsz.DirectedGraph;
+import org.ahrsz.HashMapGraph;
+import org.ahrsz.InvalidAhrszStateException;
+import org.ahrsz.InvalidExpansionStateException;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Compares AdaptiveGraph with HashMapGraph on a graph with a skewed degree distribution.
+ *
+ * The endpoints of the edges are drawn with a probability that falls with a power of the node number, so a few
+ * hubs get over a thousand neighbours and are promoted to the hashed representation, while most nodes keep a handful
+ * of neighbours in their arrays. Every edge points from the earlier to the later of its endpoints in a hidden random
+ * order, so the graph stays acyclic and the reorderings are not dominated by cycle removal. Both graphs receive the
+ * same edges in the same order, and the reorderings visit the neighbours of the hubs through forEachF() and
+ * forEachB() in both cases.
+ */
+
+public class PerformanceSkewedDegrees {
+
+    static final int NODES = 20000;
+    static final int EDGES = 20000;
+    static final double SKEW = 3.0;
+
+    @Test
+    public void test() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        System.err.println("Warmup");
+        measureAll();
+        System.err.println("Real run");
+        measureAll();
+    }
+
+    private void measureAll() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        System.err.println(String.format("HashMapGraph: %f us per insert", measure(new HashMapGraph<Integer>())));
+        System.err.println(String.format("AdaptiveGraph: %f us per insert", measure(new AdaptiveGraph<Integer>())));
+    }
+
+    private double measure(DirectedGraph<Integer> graph) throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        Random random = new Random(1);
+        int[] hidden = new int[NODES];
+        for (int i = 0; i < NODES; i++) {
+            hidden[i] = random.nextInt();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < EDGES; i++) {
+            int a = skewed(random);
+            int b = skewed(random);
+            if (hidden[a] < hidden[b]) {
+                ahrsz.addEdge(a, b, 1f);
+            } else if (hidden[b] < hidden[a]) {
+                ahrsz.addEdge(b, a, 1f);
+            }
+        }
+        return (System.nanoTime() - start) / (double) EDGES / 1000.0;
+    }
+
+    /**
+     * @return a node, where small numbers are much more likely than large ones.
+     */
+
+    private static int skewed(Random random) {
+        return (int) (NODES * Math.pow(random.nextDouble(), SKEW));
+    }
+
+}
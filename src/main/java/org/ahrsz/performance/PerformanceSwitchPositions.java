@@ -0,0 +1,87 @@
+package org.ahrsz.performance;
+
+import org.ahrsz.AhrszAlgorithm;
+import org.ahrsz.HashMapGraph;
+import org.ahrsz.IndexComparator;
+import org.ahrsz.InvalidAhrszStateException;
+import org.ahrsz.InvalidExpansionStateException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Measures reorderings that move many nodes at once. Two chains of k nodes are built, the first one positioned
+ * before the second one, so that an edge from the end of the second chain to the start of the first chain
+ * swaps both chains. The nodes are labelled randomly, so that their hash order is unrelated to their index order.
+ * The reassignment of the indices is compared with the former implementation, which sorted
+ * with a comparator looking up node2Index, sorted the concatenation again and copied it through a HashMap.
+ */
+
+public class PerformanceSwitchPositions {
+
+    static final int[] SIZES = {1000, 10000, 100000};
+    static final int REPEAT = 20;
+
+    @Test
+    public void test() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        System.err.println("Warmup");
+        measureAll();
+        System.err.println("Real run");
+        measureAll();
+    }
+
+    private void measureAll() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        for (int k : SIZES) {
+            AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>());
+            List<Integer> labels = new ArrayList<>();
+            for (int i = 0; i < 2 * k; i++) {
+                labels.add(i);
+            }
+            Collections.shuffle(labels, new Random(k));
+            for (int i = 0; i < 2 * k - 1; i++) {
+                ahrsz.addEdge(labels.get(i), labels.get(i + 1), 1f);
+            }
+            Set<Integer> first = new HashSet<>(labels.subList(0, k));
+            Set<Integer> second = new HashSet<>(labels.subList(k, 2 * k));
+            long current = 0;
+            long former = 0;
+            for (int m = 0; m < REPEAT; m++) {
+                // every switch swaps the chains, so the sets alternate between moving up and moving down.
+                long start = System.nanoTime();
+                ahrsz.switchPositions(m % 2 == 0 ? first : second, m % 2 == 0 ? second : first);
+                current += System.nanoTime() - start;
+                start = System.nanoTime();
+                formerSwitchPositions(ahrsz.node2Index, m % 2 == 0 ? second : first, m % 2 == 0 ? first : second);
+                former += System.nanoTime() - start;
+            }
+            System.err.println(String.format("k: %d, current: %f ms, former: %f ms",
+                    k, current / REPEAT / 1000000.0, former / REPEAT / 1000000.0));
+        }
+    }
+
+    private static void formerSwitchPositions(Map<Integer, Integer> node2Index, Set<Integer> shiftUp, Set<Integer> shiftDown) {
+        IndexComparator<Integer> comparator = new IndexComparator<>(node2Index);
+        List<Integer> shiftUpSorted = new ArrayList<>(shiftUp);
+        Collections.sort(shiftUpSorted, comparator);
+        List<Integer> shiftDownSorted = new ArrayList<>(shiftDown);
+        Collections.sort(shiftDownSorted, comparator);
+        List<Integer> oldOrder = new ArrayList<>(shiftUpSorted);
+        oldOrder.addAll(shiftDownSorted);
+        Collections.sort(oldOrder, comparator);
+        List<Integer> newOrder = new ArrayList<>(shiftDownSorted);
+        newOrder.addAll(shiftUpSorted);
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < oldOrder.size(); i++) {
+            positions.put(newOrder.get(i), node2Index.get(oldOrder.get(i)));
+        }
+        node2Index.putAll(positions);
+    }
+
+}
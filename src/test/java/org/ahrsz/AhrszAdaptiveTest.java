@@ -0,0 +1,172 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class AhrszAdaptiveTest {
+
+    @Test
+    public void testPromotion() {
+        AdaptiveGraph<Integer> graph = new AdaptiveGraph<>(4);
+        for (int i = 1; i <= 4; i++) graph.addEdge(0, i, 1f);
+        assertFalse(graph.isPromoted(0));
+        graph.addEdge(0, 5, 1f);
+        assertTrue(graph.isPromoted(0));
+        assertEquals(1f, graph.getF(0).get(5), 0.0001f);
+        graph.removeNode(5);
+        graph.removeNode(4);
+        graph.removeNode(3);
+        assertTrue(graph.isPromoted(0));
+        graph.removeNode(2);
+        assertFalse(graph.isPromoted(0));
+        assertEquals(1, graph.getF(0).size());
+    }
+
+    /**
+     * Applies the same random operations to an AdaptiveGraph and a HashMapGraph. A few hubs take part in
+     * most edges, so they are promoted and demoted many times.
+     */
+
+    @Test
+    public void testSameAsHashMapGraph() {
+        AdaptiveGraph<Integer> graph = new AdaptiveGraph<>(8);
+        HashMapGraph<Integer> reference = new HashMapGraph<>();
+        Random random = new Random(41);
+        for (int i = 0; i < 20000; i++) {
+            int from = random.nextInt(4) == 0 ? random.nextInt(300) : random.nextInt(3);
+            int to = random.nextInt(300);
+            float weight = random.nextFloat();
+            graph.addEdge(from, to, weight);
+            reference.addEdge(from, to, weight);
+            if (i % 5 == 0 && from != to && graph.hasEdge(to, from)) {
+                graph.removeCycle(Arrays.asList(from, to));
+                reference.removeCycle(Arrays.asList(from, to));
+            }
+            if (i % 300 == 0) {
+                int node = random.nextInt(300);
+                graph.removeNode(node);
+                reference.removeNode(node);
+            }
+        }
+        for (int node = 0; node < 300; node++) {
+            for (int other = 0; other < 300; other++) {
+                assertEquals(reference.hasEdge(node, other), graph.hasEdge(node, other));
+                if (graph.getF(node) != null) {
+                    assertEquals(reference.hasEdge(node, other), graph.getF(node).containsKey(other));
+                }
+                if (graph.getB(node) != null) {
+                    assertEquals(reference.hasEdge(other, node), graph.getB(node).containsKey(other));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRandomGraph() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        Random random = new Random(5);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new AdaptiveGraph<Integer>(4));
+        for (int i = 0; i < 3000; i++) {
+            ahrsz.addEdge(random.nextInt(100), random.nextInt(100), random.nextFloat());
+            if (i % 100 == 0) ahrsz.removeNode(random.nextInt(100));
+        }
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+    @Test
+    public void testRelabel() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AdaptiveGraph<Integer> graph = new AdaptiveGraph<>(8);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        Random random = new Random(43);
+        for (int i = 0; i < 5000; i++) {
+            int from = random.nextInt(4) == 0 ? random.nextInt(3) : random.nextInt(150);
+            int to = random.nextInt(150);
+            float weight = random.nextFloat();
+            ahrsz.addEdge(from, to, weight);
+            if (i % 100 == 0) ahrsz.removeNode(random.nextInt(150));
+            if (i % 500 == 0) {
+                assertTrue(graph.relabel(ahrsz.node2Index));
+                assertFalse(graph.relabel(ahrsz.node2Index));
+                // the neighbours are laid out in topological order.
+                for (Integer node : ahrsz.node2Index.keySet()) {
+                    final int[] previous = { Integer.MIN_VALUE };
+                    graph.forEachF(node, (successor, w) -> {
+                        assertTrue(previous[0] < ahrsz.node2Index.get(successor));
+                        previous[0] = ahrsz.node2Index.get(successor);
+                    });
+                }
+            }
+        }
+        AhrszChecker.checkAhrsz(ahrsz);
+        // the expansion only follows visible edges, so only these have to respect the order.
+        for (Integer node : ahrsz.node2Index.keySet()) {
+            graph.forEachF(node, (successor, weight) -> {
+                assertTrue(ahrsz.before(node, successor));
+                assertEquals(weight, graph.getWeight(node, successor));
+                assertTrue(graph.getB(successor).containsKey(node));
+            });
+        }
+    }
+
+    @Test
+    public void testRelabelPeriodically() throws Exception {
+        AdaptiveGraph<Integer> graph = new AdaptiveGraph<>(8);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            ScheduledFuture<?> relabelling = graph.relabelPeriodically(ahrsz, executor, 1, TimeUnit.MILLISECONDS);
+            Random random = new Random(47);
+            for (int i = 0; i < 5000; i++) {
+                synchronized (ahrsz) {
+                    ahrsz.addEdge(random.nextInt(200), random.nextInt(200), random.nextFloat());
+                    if (i % 100 == 0) ahrsz.removeNode(random.nextInt(200));
+                }
+                if (i % 250 == 0) Thread.sleep(2);
+            }
+            // once the graph stops changing, a relabelling is installed.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (! laidOutInOrder(graph, ahrsz)) {
+                assertTrue(System.nanoTime() < deadline);
+                Thread.sleep(1);
+            }
+            relabelling.cancel(false);
+            synchronized (ahrsz) {
+                assertFalse(graph.relabel(ahrsz.node2Index));
+                AhrszChecker.checkAhrsz(ahrsz);
+                for (Integer node : ahrsz.node2Index.keySet()) {
+                    graph.forEachF(node, (successor, weight) -> {
+                        assertEquals(weight, graph.getWeight(node, successor));
+                        assertTrue(graph.getB(successor).containsKey(node));
+                    });
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean laidOutInOrder(AdaptiveGraph<Integer> graph, AhrszAlgorithm<Integer> ahrsz) {
+        synchronized (ahrsz) {
+            for (Integer node : ahrsz.node2Index.keySet()) {
+                final int[] previous = { Integer.MIN_VALUE };
+                final boolean[] ascending = { true };
+                graph.forEachF(node, (successor, w) -> {
+                    ascending[0] &= previous[0] < ahrsz.node2Index.get(successor);
+                    previous[0] = ahrsz.node2Index.get(successor);
+                });
+                if (! ascending[0]) return false;
+            }
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class AhrszContractionTest {
+
+    @Test
+    public void testMultipleNodeCycle() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        HashMapGraph<Integer> graph = new HashMapGraph<>();
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph, true);
+        ahrsz.addEdge(0, 1, 0.1f);
+        ahrsz.addEdge(1, 2, 0.2f);
+        ahrsz.addEdge(2, 3, 0.4f);
+        ahrsz.addEdge(3, 4, 0.3f);
+        ahrsz.addEdge(3, 1, 0.5f);
+        assertEquals(ahrsz.representative(1), ahrsz.representative(2));
+        assertEquals(ahrsz.representative(1), ahrsz.representative(3));
+        assertFalse(ahrsz.before(1, 2));
+        assertFalse(ahrsz.before(2, 1));
+        assertTrue(ahrsz.before(0, 2));
+        assertTrue(ahrsz.before(3, 4));
+        // the weights of the cycle are left untouched.
+        assertTrue(graph.hasEdge(1, 2));
+        assertTrue(graph.hasEdge(3, 1));
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+    /**
+     * A->B->C  D->E
+     * ^-----+  |
+     * +--------+   then E->B closes a cycle with the component {A,B,C}.
+     */
+
+    @Test
+    public void testNestedContraction() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(new HashMapGraph<Character>(), true);
+        ahrsz.addEdge('A', 'B', 0.1f);
+        ahrsz.addEdge('B', 'C', 0.1f);
+        ahrsz.addEdge('D', 'E', 0.1f);
+        ahrsz.addEdge('C', 'A', 0.1f);
+        ahrsz.addEdge('C', 'D', 0.1f);
+        assertTrue(ahrsz.before('A', 'E'));
+        ahrsz.addEdge('E', 'B', 0.1f);
+        assertEquals(ahrsz.representative('A'), ahrsz.representative('E'));
+        assertEquals(ahrsz.representative('C'), ahrsz.representative('D'));
+        assertEquals(1, ahrsz.node2Index.size());
+    }
+
+    @Test
+    public void testRandomGraph() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        Random random = new Random(7);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new MinWeightHashMapGraph<Integer>(0.5f), true);
+        for (int i = 0; i < 3000; i++) {
+            ahrsz.addEdge(random.nextInt(200), random.nextInt(200), random.nextFloat());
+            if (i % 100 == 0) AhrszChecker.checkAhrsz(ahrsz);
+        }
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class AhrszDecayTest {
+
+    @Test
+    public void testExponentialDecay() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AtomicLong clock = new AtomicLong();
+        DecayingHashMapGraph<Character> graph =
+                new DecayingHashMapGraph<>(Decay.exponential(100), 0.5f, clock::get);
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(graph);
+        ahrsz.addEdge('A', 'B', 1.0f);
+        assertTrue(graph.hasEdge('A', 'B'));
+        clock.set(50);
+        assertTrue(graph.hasEdge('A', 'B'));
+        clock.set(150);
+        assertFalse(graph.hasEdge('A', 'B'));
+        // the edge B->A does not close a cycle anymore.
+        ahrsz.addEdge('B', 'A', 1.0f);
+        assertTrue(ahrsz.before('B', 'A'));
+        assertTrue(graph.hasEdge('B', 'A'));
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+    @Test
+    public void testAccumulation() {
+        AtomicLong clock = new AtomicLong();
+        DecayingHashMapGraph<Character> graph =
+                new DecayingHashMapGraph<>(Decay.exponential(100), 0.0f, clock::get);
+        graph.addEdge('A', 'B', 1.0f);
+        clock.set(100);
+        graph.addEdge('A', 'B', 1.0f);
+        assertEquals(1.5f, graph.getF('A').get('B'), 0.001f);
+        assertEquals(1.5f, graph.getB('B').get('A'), 0.001f);
+    }
+
+    @Test
+    public void testForEach() {
+        AtomicLong clock = new AtomicLong();
+        DecayingHashMapGraph<Character> graph =
+                new DecayingHashMapGraph<>(Decay.window(10), 0.0f, clock::get);
+        graph.addEdge('A', 'B', 1.0f);
+        clock.set(5);
+        graph.addEdge('A', 'C', 2.0f);
+        graph.addEdge('D', 'C', 3.0f);
+        clock.set(12);
+        Map<Character, Float> successors = new HashMap<>();
+        graph.forEachF('A', successors::put);
+        assertEquals(1, successors.size());
+        assertEquals(2.0f, successors.get('C'), 0f);
+        Map<Character, Float> predecessors = new HashMap<>();
+        graph.forEachB('C', predecessors::put);
+        assertEquals(graph.getB('C'), predecessors);
+    }
+
+    @Test
+    public void testWindowAndSweep() {
+        AtomicLong clock = new AtomicLong();
+        DecayingHashMapGraph<Character> graph =
+                new DecayingHashMapGraph<>(Decay.window(10), 0.0f, clock::get);
+        graph.addEdge('A', 'B', 1.0f);
+        graph.addEdge('B', 'C', 1.0f);
+        clock.set(5);
+        graph.addEdge('C', 'D', 1.0f);
+        clock.set(12);
+        assertFalse(graph.hasEdge('A', 'B'));
+        assertTrue(graph.hasEdge('C', 'D'));
+        assertEquals(3, graph.storedEdges());
+        assertEquals(2, graph.sweep());
+        assertEquals(1, graph.storedEdges());
+        assertFalse(graph.getForwardKeys().contains('A'));
+        assertFalse(graph.getBackwardKeys().contains('B'));
+        assertTrue(graph.getForwardKeys().contains('C'));
+    }
+
+    @Test
+    public void testSweepRemovesNodesFromOrder() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AtomicLong clock = new AtomicLong();
+        DecayingHashMapGraph<Character> graph =
+                new DecayingHashMapGraph<>(Decay.window(10), 0.0f, clock::get);
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(graph);
+        ahrsz.addEdge('A', 'B', 1.0f);
+        ahrsz.addEdge('B', 'C', 1.0f);
+        clock.set(5);
+        ahrsz.addEdge('C', 'D', 1.0f);
+        clock.set(12);
+        assertEquals(2, graph.sweep(ahrsz));
+        assertFalse(ahrsz.node2Index.containsKey('A'));
+        assertFalse(ahrsz.node2Index.containsKey('B'));
+        assertTrue(ahrsz.node2Index.containsKey('C'));
+        assertTrue(ahrsz.before('C', 'D'));
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+    @Test
+    public void testClockGoingBackwards() {
+        assertEquals(1.0f, Decay.exponential(100).apply(1.0f, -50), 0f);
+    }
+
+}
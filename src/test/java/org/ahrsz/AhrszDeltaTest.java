@@ -0,0 +1,63 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class AhrszDeltaTest {
+
+    @Test
+    public void testRemovedEdges() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>());
+        List<Integer> removed = new ArrayList<>();
+        ahrsz.setDeltaListener(delta -> {
+            for (int i = 0; i < delta.removedEdgeCount(); i++) {
+                removed.add(delta.removedEdgeSource(i));
+                removed.add(delta.removedEdgeSink(i));
+            }
+        });
+        ahrsz.addEdge(1, 2, 0.2f);
+        ahrsz.addEdge(2, 3, 0.4f);
+        ahrsz.addEdge(3, 4, 0.3f);
+        ahrsz.addEdge(4, 1, 0.5f);
+        assertEquals(2, removed.size());
+        assertEquals(1, removed.get(0).intValue());
+        assertEquals(2, removed.get(1).intValue());
+    }
+
+    @Test
+    public void testReplica() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        replicate(new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>()));
+    }
+
+    @Test
+    public void testContractedReplica() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        replicate(new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>(), true));
+    }
+
+    private void replicate(AhrszAlgorithm<Integer> ahrsz) throws InvalidExpansionStateException, InvalidAhrszStateException {
+        OrderDeltaEncoder<Integer> encoder = new OrderDeltaEncoder<>(NodeCodec.integers(), 16);
+        OrderDeltaApplier<Integer> replica = new OrderDeltaApplier<>(NodeCodec.integers());
+        ahrsz.setDeltaListener(delta -> {
+            ByteBuffer encoded = encoder.encode(delta);
+            ByteBuffer copy = ByteBuffer.allocate(encoded.remaining());
+            copy.put(encoded).flip();
+            replica.apply(copy);
+            assertFalse(copy.hasRemaining());
+        });
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            ahrsz.addEdge(random.nextInt(100), random.nextInt(100), random.nextFloat());
+        }
+        assertTrue(replica.sequence() > 0);
+        assertEquals(ahrsz.node2Index, replica.getNode2Index());
+    }
+
+}
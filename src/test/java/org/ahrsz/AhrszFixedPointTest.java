@@ -0,0 +1,99 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class AhrszFixedPointTest {
+
+    @Test
+    public void testSingleEdge() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new FixedPointGraph<Integer>());
+        ahrsz.addEdge(1,2,0.1f);
+        assert(ahrsz.before(1,2));
+    }
+
+    @Test
+    public void testTinyAndHugeWeights() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        FixedPointGraph<Integer> graph = new FixedPointGraph<>(100);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        ahrsz.addEdge(1, 2, 0.001f);
+        assertEquals(1, graph.getUnits(1, 2));
+        graph.addEdge(2, 3, Long.MAX_VALUE);
+        try {
+            graph.addEdge(2, 3, 1L);
+            fail();
+        } catch (ArithmeticException e) {
+            assertEquals(Long.MAX_VALUE, graph.getUnits(2, 3));
+        }
+    }
+
+    @Test
+    public void testMultipleNodeCycle() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        FixedPointGraph<Integer> graph = new FixedPointGraph<>();
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        ahrsz.addEdge(1, 2, 0.2f);
+        ahrsz.addEdge(2, 3, 0.4f);
+        ahrsz.addEdge(3, 4, 0.3f);
+        assertTrue(ahrsz.before(1, 4));
+        ahrsz.addEdge(4, 1, 0.5f);
+        assertTrue(ahrsz.before(2, 3));
+        assertTrue(ahrsz.before(3,4));
+        assertTrue(ahrsz.before(4, 1));
+        assertFalse(graph.hasEdge(1, 2));
+        assertEquals(graph.toUnits(0.2f), graph.getUnits(2, 3));
+        assertEquals(graph.toUnits(0.1f), graph.getUnits(3, 4));
+        assertEquals(graph.toUnits(0.3f), graph.getUnits(4, 1));
+    }
+
+    @Test
+    public void testMinWeight() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        FixedPointGraph<Character> graph = new FixedPointGraph<>(FixedPointGraph.DEFAULT_SCALE, 1.0f);
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(graph);
+        ahrsz.addEdge('A','B',1.1f);
+        ahrsz.addEdge('C','D',1.1f);
+        ahrsz.addEdge('C','A',0.5f);
+        assertFalse(graph.hasEdge('C', 'A'));
+        assertTrue(graph.getF('C').containsKey('D'));
+        assertFalse(graph.getF('C').containsKey('A'));
+        ahrsz.addEdge('C','A',0.6f);
+        assertTrue(ahrsz.before('C','A'));
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+    /**
+     * Repeatedly closes cycles with weights that are not representable as floats.
+     * No edge may be left behind with a residual weight after its cycle has been cancelled.
+     */
+
+    @Test
+    public void testNoResidualEdges() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        FixedPointGraph<Integer> graph = new FixedPointGraph<>();
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        for (int i = 0; i < 10000; i++) {
+            ahrsz.addEdge(1, 2, 0.1f);
+            ahrsz.addEdge(2, 3, 0.1f);
+            ahrsz.addEdge(3, 1, 0.1f);
+        }
+        assertTrue(graph.getF(1).isEmpty());
+        assertTrue(graph.getF(2).isEmpty());
+        assertTrue(graph.getF(3).isEmpty());
+        assertTrue(graph.getForwardKeys().isEmpty());
+    }
+
+    @Test
+    public void testRandomGraph() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        Random random = new Random(42);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new FixedPointGraph<Integer>());
+        for (int i = 0; i < 2000; i++) {
+            ahrsz.addEdge(random.nextInt(50), random.nextInt(50), random.nextFloat());
+        }
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class AhrszLevelTest {
+
+    /**
+     * A->B->C->D
+     * A------>D   then E->A raises all levels by one.
+     */
+
+    @Test
+    public void testLevels() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(new HashMapGraph<Character>());
+        LevelIndex<Character> levels = ahrsz.trackLevels();
+        ahrsz.addEdge('A', 'B', 0.1f);
+        ahrsz.addEdge('B', 'C', 0.1f);
+        ahrsz.addEdge('C', 'D', 0.1f);
+        ahrsz.addEdge('A', 'D', 0.1f);
+        assertEquals(0, levels.level('A'));
+        assertEquals(3, levels.level('D'));
+        assertEquals(4, levels.depth());
+        ahrsz.addEdge('E', 'A', 0.1f);
+        assertEquals(0, levels.level('E'));
+        assertEquals(4, levels.level('D'));
+        assertTrue(levels.frontier(1).contains('A'));
+        assertEquals(1, levels.frontier(1).size());
+    }
+
+    /**
+     * A back edge too light to be visible neither closes a cycle nor changes a level.
+     */
+
+    @Test(timeout = 10000)
+    public void testInvisibleBackEdge() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<String> ahrsz = new AhrszAlgorithm<String>(new HashMapGraph<String>());
+        LevelIndex<String> levels = ahrsz.trackLevels();
+        ahrsz.addEdge("A", "B", 1f);
+        ahrsz.addEdge("B", "A", 0.00001f);
+        assertEquals(0, levels.level("A"));
+        assertEquals(1, levels.level("B"));
+        ahrsz.addEdge("B", "C", 0.00001f);
+        assertEquals(0, levels.level("C"));
+        assertEquals(2, levels.depth());
+    }
+
+    /**
+     * Removing the cycle 1->2->3->1 drops the edge 1->2, which lowers the levels of 2 and 3.
+     */
+
+    @Test
+    public void testCycleRemoval() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>());
+        LevelIndex<Integer> levels = ahrsz.trackLevels();
+        ahrsz.addEdge(1, 2, 0.1f);
+        ahrsz.addEdge(2, 3, 0.2f);
+        assertEquals(2, levels.level(3));
+        ahrsz.addEdge(3, 1, 0.3f);
+        assertEquals(0, levels.level(2));
+        assertEquals(1, levels.level(3));
+        assertEquals(2, levels.level(1));
+    }
+
+    @Test
+    public void testRandomGraph() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        Random random = new Random(3);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new MinWeightHashMapGraph<Integer>(0.5f));
+        for (int i = 0; i < 500; i++) {
+            ahrsz.addEdge(random.nextInt(100), random.nextInt(100), random.nextFloat());
+        }
+        LevelIndex<Integer> levels = ahrsz.trackLevels();
+        for (int i = 0; i < 2000; i++) {
+            ahrsz.addEdge(random.nextInt(100), random.nextInt(100), random.nextFloat());
+        }
+        Map<Integer, Integer> expected = recompute(ahrsz);
+        for (Integer node : ahrsz.node2Index.keySet()) {
+            assertEquals(expected.get(node).intValue(), levels.level(node));
+        }
+    }
+
+    private static Map<Integer, Integer> recompute(AhrszAlgorithm<Integer> ahrsz) {
+        List<Integer> nodes = new ArrayList<>(ahrsz.node2Index.keySet());
+        nodes.sort(new IndexComparator<Integer>(ahrsz.node2Index));
+        Map<Integer, Integer> result = new HashMap<>();
+        for (Integer node : nodes) {
+            int level = 0;
+            for (Integer predecessor : ahrsz.directedGraph.getB(node).keySet()) {
+                level = Math.max(level, result.get(predecessor) + 1);
+            }
+            result.put(node, level);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.ahrsz;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class AhrszOffHeapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMultipleNodeCycle() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        OffHeapGraph<Integer> graph = new OffHeapGraph<>();
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        ahrsz.addEdge(1, 2, 0.2f);
+        ahrsz.addEdge(2, 3, 0.4f);
+        ahrsz.addEdge(3, 4, 0.3f);
+        assertTrue(ahrsz.before(1, 4));
+        ahrsz.addEdge(4, 1, 0.5f);
+        assertTrue(ahrsz.before(4, 1));
+        assertFalse(graph.hasEdge(1, 2));
+        assertFalse(graph.getB(2).containsKey(1));
+        assertEquals(0.3f, graph.getF(4).get(1), 0.0001f);
+    }
+
+    /**
+     * Applies the same random operations to an OffHeapGraph and a HashMapGraph.
+     * The high degrees spread the adjacency lists over many blocks and force the edge table to grow.
+     */
+
+    @Test
+    public void testSameAsHashMapGraph() {
+        compare(new OffHeapGraph<Integer>());
+    }
+
+    @Test
+    public void testMappedSegments() {
+        compare(new OffHeapGraph<Integer>(SegmentAllocator.mapped(folder.getRoot()), 0f));
+    }
+
+    /**
+     * Small segments spread the edge table over many segments, as a table beyond 2^20 slots would be.
+     */
+
+    @Test
+    public void testSegmentedEdgeTable() {
+        OffHeapGraph<Integer> graph = new OffHeapGraph<>(SegmentAllocator.direct(), 0f, 6);
+        compare(graph);
+        // the 200 nodes need four node segments of 64 nodes each.
+        assertTrue(graph.offHeapBytes() > 64 * 12 * 4 + 4 * 64 * 16);
+    }
+
+    private void compare(OffHeapGraph<Integer> graph) {
+        HashMapGraph<Integer> reference = new HashMapGraph<>();
+        Random random = new Random(17);
+        for (int i = 0; i < 20000; i++) {
+            int from = random.nextInt(200);
+            int to = random.nextInt(200);
+            float weight = random.nextFloat();
+            graph.addEdge(from, to, weight);
+            reference.addEdge(from, to, weight);
+            if (i % 7 == 0 && from != to && graph.hasEdge(to, from)) {
+                graph.removeCycle(Arrays.asList(from, to));
+                reference.removeCycle(Arrays.asList(from, to));
+            }
+            if (i % 500 == 0) {
+                graph.removeNode(from);
+                reference.removeNode(from);
+            }
+        }
+        for (int node = 0; node < 200; node++) {
+            for (int other = 0; other < 200; other++) {
+                assertEquals(reference.hasEdge(node, other), graph.hasEdge(node, other));
+                assertEquals(reference.hasEdge(node, other), graph.getF(node).containsKey(other));
+                assertEquals(reference.hasEdge(other, node), graph.getB(node).containsKey(other));
+            }
+        }
+        assertTrue(graph.offHeapBytes() > 0);
+    }
+
+    @Test
+    public void testRandomGraph() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        Random random = new Random(5);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new OffHeapGraph<Integer>());
+        for (int i = 0; i < 3000; i++) {
+            ahrsz.addEdge(random.nextInt(100), random.nextInt(100), random.nextFloat());
+            if (i % 100 == 0) ahrsz.removeNode(random.nextInt(100));
+        }
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+}
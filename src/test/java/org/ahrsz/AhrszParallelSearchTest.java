@@ -0,0 +1,60 @@
+package org.ahrsz;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class AhrszParallelSearchTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testMultipleNodeCycle() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        HashMapGraph<Integer> graph = new HashMapGraph<>();
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        ahrsz.parallelSearch(executor, 0);
+        ahrsz.addEdge(1, 2, 0.2f);
+        ahrsz.addEdge(2, 3, 0.4f);
+        ahrsz.addEdge(3, 4, 0.3f);
+        ahrsz.addEdge(4, 1, 0.5f);
+        assertFalse(graph.hasEdge(1, 2));
+        assertTrue(graph.hasEdge(4, 1));
+        assertTrue(ahrsz.before(4, 1));
+        assertTrue(ahrsz.before(2, 3));
+        assertTrue(ahrsz.before(3, 4));
+    }
+
+    @Test
+    public void testRandomGraph() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        Random random = new Random(3);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>());
+        ahrsz.parallelSearch(executor, 5);
+        for (int i = 0; i < 5000; i++) {
+            ahrsz.addEdge(random.nextInt(300), random.nextInt(300), random.nextFloat());
+        }
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+    @Test
+    public void testRandomOffHeapGraph() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        Random random = new Random(4);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new OffHeapGraph<Integer>());
+        ahrsz.parallelSearch(executor, 0);
+        for (int i = 0; i < 3000; i++) {
+            ahrsz.addEdge(random.nextInt(200), random.nextInt(200), random.nextFloat());
+        }
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class AhrszReachabilityTest {
+
+    @Test
+    public void testReachable() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(new HashMapGraph<Character>());
+        ahrsz.cacheReachability(16);
+        ahrsz.addEdge('A', 'B', 0.2f);
+        ahrsz.addEdge('B', 'C', 0.4f);
+        ahrsz.addEdge('D', 'E', 0.4f);
+        assertTrue(ahrsz.reachable('A', 'C'));
+        assertFalse(ahrsz.reachable('A', 'E'));
+        assertFalse(ahrsz.reachable('C', 'A'));
+        // the cached negative answer is dropped by the new edge.
+        ahrsz.addEdge('C', 'D', 0.1f);
+        assertTrue(ahrsz.reachable('A', 'E'));
+        // closing the cycle removes the edge from A to B, the cached positive answers are dropped.
+        ahrsz.addEdge('C', 'A', 0.3f);
+        assertFalse(ahrsz.reachable('A', 'C'));
+        assertFalse(ahrsz.reachable('A', 'E'));
+        assertTrue(ahrsz.reachable('B', 'E'));
+        ahrsz.removeNode('D');
+        assertFalse(ahrsz.reachable('B', 'E'));
+    }
+
+    @Test
+    public void testSelectiveInvalidation() {
+        ReachabilityCache<Character> cache = new ReachabilityCache<>(16);
+        cache.put('A', 0, 'B', 1, false);
+        cache.put('C', 5, 'D', 6, false);
+        cache.put('E', 2, 'F', 8, true);
+        // an edge from index 3 to index 4 can only connect sources up to 3 with sinks from 4 on.
+        cache.edgeAdded(3, 4);
+        assertEquals(Boolean.FALSE, cache.get('A', 'B'));
+        assertEquals(Boolean.FALSE, cache.get('C', 'D'));
+        // after C moved to index 1, the same edge may connect C with D.
+        cache.indexChanged('C', 1);
+        cache.edgeAdded(3, 4);
+        assertEquals(null, cache.get('C', 'D'));
+        cache.edgesRemoved(9, 10);
+        assertEquals(Boolean.TRUE, cache.get('E', 'F'));
+        cache.nodeRemoved('F');
+        assertEquals(null, cache.get('E', 'F'));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRandomQueries() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        checkRandomQueries(new AhrszAlgorithm<Integer>(new MinWeightHashMapGraph<Integer>(0.3f)));
+    }
+
+    @Test
+    public void testRandomQueriesContracted() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        checkRandomQueries(new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>(), true));
+    }
+
+    /**
+     * Compares the cached answers with an unpruned search after every operation.
+     */
+
+    private void checkRandomQueries(AhrszAlgorithm<Integer> ahrsz) throws InvalidExpansionStateException, InvalidAhrszStateException {
+        Random random = new Random(19);
+        ahrsz.cacheReachability(500);
+        for (int i = 0; i < 3000; i++) {
+            ahrsz.addEdge(random.nextInt(60), random.nextInt(60), random.nextFloat());
+            if (i % 50 == 0) ahrsz.removeNode(random.nextInt(60));
+            for (int q = 0; q < 20; q++) {
+                int from = random.nextInt(60);
+                int to = random.nextInt(60);
+                assertEquals(search(ahrsz, from, to), ahrsz.reachable(from, to));
+            }
+        }
+    }
+
+    private static boolean search(AhrszAlgorithm<Integer> ahrsz, Integer from, Integer to) {
+        from = ahrsz.representative(from);
+        to = ahrsz.representative(to);
+        if (from.equals(to)) return true;
+        Set<Integer> visited = new HashSet<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(from);
+        while (! stack.isEmpty()) {
+            Integer node = stack.pop();
+            if (node.equals(to)) return true;
+            if (! visited.add(node) || ahrsz.directedGraph.getF(node) == null) continue;
+            for (Integer next : ahrsz.directedGraph.getF(node).keySet()) {
+                if (ahrsz.directedGraph.hasEdge(node, next)) stack.push(next);
+            }
+        }
+        return false;
+    }
+
+}
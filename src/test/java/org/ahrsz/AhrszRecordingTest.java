@@ -0,0 +1,86 @@
+package org.ahrsz;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class AhrszRecordingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testInsertEvents() throws Exception {
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(new HashMapGraph<Character>());
+        ahrsz.recordSlowInserts(0, 2);
+        File file = folder.newFile("inserts.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.ahrsz.Insert");
+            recording.start();
+            ahrsz.addEdge('A', 'B', 0.2f);
+            ahrsz.addEdge('C', 'D', 0.4f);
+            ahrsz.addEdge('D', 'A', 0.3f);
+            ahrsz.addEdge('B', 'C', 0.1f);
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if (event.getEventType().getName().equals("org.ahrsz.Insert")) events.add(event);
+        }
+        assertEquals(4, events.size());
+        RecordedEvent first = events.get(0);
+        assertEquals("A", first.getString("from"));
+        assertEquals(0, first.getInt("switchedNodes"));
+        assertNull(first.getString("affectedNodes"));
+        // C->D is placed after A->B, so D->A moves C and D before A and B.
+        RecordedEvent reorder = events.get(2);
+        assertTrue(reorder.getInt("expansionRounds") > 0);
+        assertEquals(0, reorder.getInt("cyclesRemoved"));
+        assertEquals(4, reorder.getInt("switchedNodes"));
+        assertEquals(4, reorder.getInt("affectedNodeCount"));
+        assertEquals(2, reorder.getString("affectedNodes").split(",").length);
+        assertTrue(new HashSet<>(Arrays.asList("A", "B", "C", "D")).containsAll(
+                Arrays.asList(reorder.getString("affectedNodes").split(","))));
+        assertEquals(1, events.get(3).getInt("cyclesRemoved"));
+    }
+
+    @Test
+    public void testFailedInsertEndsEvent() throws Exception {
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(new HashMapGraph<Character>());
+        File file = folder.newFile("failed.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.ahrsz.Insert");
+            recording.start();
+            try {
+                ahrsz.addEdge('A', 'B', -1f);
+                fail();
+            } catch (RuntimeException e) {
+                // expected
+            }
+            ahrsz.addEdge('B', 'C', 1f);
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        List<String> sources = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if (event.getEventType().getName().equals("org.ahrsz.Insert")) sources.add(event.getString("from"));
+        }
+        assertEquals(Arrays.asList("A", "B"), sources);
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class AhrszRegistryTest {
+
+    @Test
+    public void testTenantsAreIndependent() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszRegistry<String, Integer> registry = new AhrszRegistry<>();
+        registry.addEdge("a", 1, 2, 1f);
+        registry.addEdge("b", 2, 1, 1f);
+        assertTrue(registry.before("a", 1, 2));
+        assertTrue(registry.before("b", 2, 1));
+        assertEquals(2, registry.size());
+        assertEquals(2, registry.getInterner().size());
+        assertTrue(registry.memoryUsage("a") > 0);
+        assertEquals(registry.memoryUsage("a"), registry.memoryUsage("b"));
+        long plain = registry.memoryUsage("a");
+        registry.get("a").checkEvery(1);
+        assertTrue(registry.memoryUsage("a") > plain);
+        registry.remove("a");
+        assertEquals(1, registry.memoryUsage().size());
+    }
+
+    @Test
+    public void testConcurrentTenants() throws Exception {
+        AhrszRegistry<Integer, Integer> registry = new AhrszRegistry<>(() -> new MinWeightHashMapGraph<Integer>(0.5f));
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int seed = t;
+            Thread thread = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    for (int i = 0; i < 5000; i++) {
+                        registry.addEdge(random.nextInt(20), random.nextInt(50), random.nextInt(50), random.nextFloat());
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int tenant = 0; tenant < 20; tenant++) {
+            AhrszChecker.checkAhrsz(registry.get(tenant));
+        }
+    }
+
+    @Test
+    public void testRemovedTenantReleasesNodes() throws Exception {
+        AhrszRegistry<String, String> registry = new AhrszRegistry<>();
+        for (int i = 0; i < 100; i++) {
+            registry.addEdge("a", "n" + i, "n" + (i + 1), 1f);
+        }
+        registry.addEdge("b", "n" + 0, "n" + 1, 1f);
+        assertEquals(101, registry.getInterner().size());
+        registry.remove("a");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (registry.getInterner().size() > 2 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        // only the nodes that tenant b still refers to are left.
+        assertEquals(2, registry.getInterner().size());
+        assertTrue(registry.before("b", "n0", "n1"));
+    }
+
+}
@@ -0,0 +1,98 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class AhrszRemoveNodeTest {
+
+    @Test
+    public void testRemoveNode() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        HashMapGraph<Character> graph = new HashMapGraph<>();
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(graph);
+        ahrsz.addEdge('A', 'B', 0.1f);
+        ahrsz.addEdge('B', 'C', 0.1f);
+        ahrsz.addEdge('C', 'D', 0.1f);
+        ahrsz.removeNode('B');
+        assertFalse(ahrsz.node2Index.containsKey('B'));
+        assertFalse(graph.hasEdge('A', 'B'));
+        assertFalse(graph.hasEdge('B', 'C'));
+        assertTrue(graph.getF('A').isEmpty());
+        assertTrue(graph.getB('C').isEmpty());
+        // the slot of B lies between A and C and is reused for a new predecessor of C.
+        int slot = ahrsz.node2Index.get('A') + 1;
+        ahrsz.addEdge('E', 'C', 0.1f);
+        assertEquals(slot, ahrsz.node2Index.get('E').intValue());
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+    @Test
+    public void testRemoveSinkAndSource() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        HashMapGraph<Character> graph = new HashMapGraph<>();
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(graph);
+        ahrsz.addEdge('A', 'B', 0.1f);
+        ahrsz.addEdge('B', 'C', 0.1f);
+        // C has no outgoing edges, A has no incoming edges.
+        ahrsz.removeNode('C');
+        ahrsz.removeNode('A');
+        assertFalse(ahrsz.node2Index.containsKey('C'));
+        assertFalse(ahrsz.node2Index.containsKey('A'));
+        assertFalse(graph.hasEdge('B', 'C'));
+        assertTrue(ahrsz.node2Index.containsKey('B'));
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+    @Test
+    public void testIndexSpaceStaysDense() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new FixedPointGraph<Integer>());
+        for (int i = 0; i < 1000; i++) {
+            ahrsz.addEdge(2 * i, 2 * i + 1, 1f);
+            ahrsz.removeNode(2 * i);
+            ahrsz.removeNode(2 * i + 1);
+        }
+        assertTrue(ahrsz.node2Index.isEmpty());
+        ahrsz.addEdge(1, 2, 1f);
+        ahrsz.addEdge(0, 1, 1f);
+        ahrsz.addEdge(2, 3, 1f);
+        // no index stays reserved for the removed nodes.
+        assertEquals(3, ahrsz.node2Index.get(3) - ahrsz.node2Index.get(0));
+    }
+
+    @Test
+    public void testRemoveFromComponent() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>(), true);
+        ahrsz.addEdge(1, 2, 1f);
+        ahrsz.addEdge(2, 3, 1f);
+        ahrsz.addEdge(3, 1, 1f);
+        ahrsz.addEdge(3, 4, 1f);
+        Integer rep = ahrsz.representative(1);
+        ahrsz.removeNode(rep);
+        assertFalse(ahrsz.node2Index.containsKey(rep));
+        for (int node = 1; node <= 3; node++) {
+            if (node != rep) assertTrue(ahrsz.before(node, 4));
+        }
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+    @Test
+    public void testRandomRemovals() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        Random random = new Random(13);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new MinWeightHashMapGraph<Integer>(0.3f));
+        LevelIndex<Integer> levels = ahrsz.trackLevels();
+        for (int i = 0; i < 3000; i++) {
+            ahrsz.addEdge(random.nextInt(100), random.nextInt(100), random.nextFloat());
+            if (i % 10 == 0) ahrsz.removeNode(random.nextInt(100));
+        }
+        AhrszChecker.checkAhrsz(ahrsz);
+        assertEquals(ahrsz.node2Index.size(), new HashSet<>(ahrsz.node2Index.values()).size());
+        for (Integer node : ahrsz.node2Index.keySet()) {
+            assertTrue(levels.level(node) >= 0);
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+package org.ahrsz;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class AhrszServerTest {
+
+    private ExecutorService connections;
+    private AhrszAlgorithm<Integer> ahrsz;
+    private AhrszServer<Integer> server;
+
+    @Before
+    public void setUp() throws Exception {
+        connections = Executors.newCachedThreadPool();
+        ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>());
+        server = new AhrszServer<>(ahrsz, NodeCodec.integers(), 0, connections);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+        connections.shutdownNow();
+    }
+
+    @Test
+    public void testRequests() throws Exception {
+        try (AhrszClient<Integer> client = new AhrszClient<>(NodeCodec.integers(), server.port())) {
+            assertEquals(0, client.probe().size);
+            assertTrue(client.addEdge(3, 2, 1f));
+            assertTrue(client.addEdge(2, 1, 1f));
+            client.flush();
+            assertTrue(client.before(3, 2));
+            assertTrue(client.before(2, 1));
+            assertFalse(client.before(1, 3));
+            assertNull(client.before(1, 4));
+            assertEquals(0, client.rank(3));
+            assertEquals(1, client.rank(2));
+            assertEquals(2, client.rank(1));
+            assertEquals(-1, client.rank(4));
+            assertEquals(3, client.probe().size);
+        }
+    }
+
+    @Test
+    public void testPipelining() throws Exception {
+        try (AhrszClient<Integer> client = new AhrszClient<>(NodeCodec.integers(), server.port())) {
+            // a chain 1000 -> 999 -> ... -> 0, sent without waiting for responses.
+            for (int i = 1000; i > 0; i--) {
+                client.sendAddEdge(i, i - 1, 1f);
+            }
+            client.sendFlush();
+            for (int i = 1; i < 1000; i++) {
+                client.sendRank(i);
+            }
+            client.sendBefore(1000, 0);
+            for (int i = 1000; i > 0; i--) {
+                assertTrue(client.receiveAddEdge());
+            }
+            client.receiveFlush();
+            for (int i = 1; i < 1000; i++) {
+                assertEquals(1000 - i, client.receiveRank());
+            }
+            assertTrue(client.receiveBefore());
+        }
+    }
+
+    @Test
+    public void testConcurrentClients() throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            final int offset = c * 100;
+            Thread thread = new Thread(() -> {
+                try (AhrszClient<Integer> client = new AhrszClient<>(NodeCodec.integers(), server.port())) {
+                    for (int i = 0; i < 99; i++) {
+                        client.sendAddEdge(offset + i, offset + i + 1, 1f);
+                    }
+                    for (int i = 0; i < 99; i++) {
+                        client.receiveAddEdge();
+                    }
+                    client.flush();
+                    assertTrue(client.before(offset, offset + 99));
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(failures.toString(), failures.isEmpty());
+        synchronized (ahrsz) {
+            assertEquals(400, ahrsz.node2Index.size());
+        }
+        assertEquals(400, server.snapshot().size());
+    }
+
+    @Test
+    public void testUnknownOpcode() throws Exception {
+        try (SocketChannel channel = SocketChannel.open(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.port()))) {
+            channel.write(ByteBuffer.wrap(new byte[] { 42 }));
+            ByteBuffer response = ByteBuffer.allocate(2);
+            while (channel.read(response) >= 0) {
+                // read until the server closes the connection.
+            }
+            assertEquals(1, response.position());
+            assertEquals(AhrszServer.ERROR, response.get(0));
+        }
+    }
+
+    @Test
+    public void testInvalidWeights() throws Exception {
+        try (AhrszClient<Integer> client = new AhrszClient<>(NodeCodec.integers(), server.port())) {
+            assertFalse(client.addEdge(1, 2, Float.NaN));
+            assertFalse(client.addEdge(1, 2, -1f));
+            client.flush();
+            assertEquals(0, client.probe().size);
+        }
+    }
+
+    @Test
+    public void testFailedWriter() throws Exception {
+        AhrszAlgorithm<Integer> failing = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>() {
+            @Override
+            public void addEdge(Integer from, Integer to, float weight) {
+                throw new RuntimeException("The graph is broken.");
+            }
+        });
+        try (AhrszServer<Integer> broken = new AhrszServer<>(failing, NodeCodec.integers(), 0, connections);
+             AhrszClient<Integer> client = new AhrszClient<>(NodeCodec.integers(), broken.port())) {
+            assertTrue(client.addEdge(1, 2, 1f));
+            try {
+                client.flush();
+                fail();
+            } catch (IOException e) {
+                // the server answers with ERROR.
+            }
+            try {
+                client.probe();
+                fail();
+            } catch (IOException e) {
+                // the server has closed the connection.
+            }
+        } catch (IllegalStateException e) {
+            // closing the server reports the failed writer.
+        }
+    }
+
+}
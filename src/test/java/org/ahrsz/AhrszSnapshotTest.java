@@ -0,0 +1,88 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class AhrszSnapshotTest {
+
+    @Test
+    public void testSnapshot() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(new HashMapGraph<Character>());
+        ahrsz.addEdge('A', 'B', 0.2f);
+        ahrsz.addEdge('B', 'C', 0.4f);
+        OrderSnapshot<Character> snapshot = ahrsz.snapshot();
+        ahrsz.addEdge('C', 'A', 0.3f);
+        ahrsz.addEdge('C', 'D', 0.3f);
+        assertFalse(ahrsz.directedGraph.hasEdge('A', 'B'));
+        assertTrue(snapshot.before('A', 'B'));
+        assertTrue(snapshot.before('B', 'C'));
+        assertEquals(0.2f, snapshot.getF('A').get('B'));
+        assertEquals(0.4f, snapshot.getB('C').get('B'));
+        assertNull(snapshot.getF('C'));
+        assertNull(snapshot.index('D'));
+        List<Character> ordered = new ArrayList<>();
+        for (Character node : snapshot) ordered.add(node);
+        assertEquals("[A, B, C]", ordered.toString());
+        OrderSnapshot<Character> next = ahrsz.snapshot();
+        assertEquals(snapshot.version() + 1, next.version());
+        assertNull(next.getF('A'));
+        assertEquals(0.2f, next.getF('B').get('C'), 0.0001f);
+        assertTrue(next.before('C', 'D'));
+    }
+
+    @Test
+    public void testRandomSnapshots() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new MinWeightHashMapGraph<Integer>(0.3f));
+        Random random = new Random(31);
+        List<OrderSnapshot<Integer>> snapshots = new ArrayList<>();
+        List<Map<Integer, Integer>> orders = new ArrayList<>();
+        List<Map<Integer, Map<Integer, Float>>> edges = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            ahrsz.addEdge(random.nextInt(80), random.nextInt(80), random.nextFloat());
+            if (i % 100 == 0) ahrsz.removeNode(random.nextInt(80));
+            if (i % 250 == 0) {
+                snapshots.add(ahrsz.snapshot());
+                orders.add(new HashMap<>(ahrsz.node2Index));
+                edges.add(visibleEdges(ahrsz));
+            }
+        }
+        for (int s = 0; s < snapshots.size(); s++) {
+            OrderSnapshot<Integer> snapshot = snapshots.get(s);
+            assertEquals(orders.get(s).size(), snapshot.size());
+            int previous = Integer.MIN_VALUE;
+            int rank = 0;
+            for (Integer node : snapshot) {
+                int index = orders.get(s).get(node);
+                assertEquals(Integer.valueOf(index), snapshot.index(node));
+                assertEquals(rank++, snapshot.rank(node));
+                assertTrue(previous < index);
+                previous = index;
+                Map<Integer, Float> expected = edges.get(s).get(node);
+                Map<Integer, Float> actual = snapshot.getF(node);
+                assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size());
+                if (expected != null) assertEquals(expected, new HashMap<>(actual));
+            }
+            assertEquals(snapshot.size(), rank);
+        }
+    }
+
+    private static Map<Integer, Map<Integer, Float>> visibleEdges(AhrszAlgorithm<Integer> ahrsz) {
+        Map<Integer, Map<Integer, Float>> result = new HashMap<>();
+        for (Integer node : ahrsz.node2Index.keySet()) {
+            Map<Integer, Float> outgoing = new HashMap<>(ahrsz.directedGraph.getF(node));
+            if (! outgoing.isEmpty()) result.put(node, outgoing);
+        }
+        return result;
+    }
+
+}
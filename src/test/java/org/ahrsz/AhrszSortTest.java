@@ -0,0 +1,58 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class AhrszSortTest {
+
+    @Test
+    public void testSortByOrder() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(new HashMapGraph<Character>());
+        ahrsz.addEdge('B', 'C', 0.2f);
+        ahrsz.addEdge('C', 'D', 0.2f);
+        ahrsz.addEdge('A', 'B', 0.2f);
+        Character[] nodes = { 'D', 'X', 'B', 'A', 'Y', 'C' };
+        ahrsz.sortByOrder(nodes);
+        // unknown nodes come first, in their original order.
+        assertEquals(Arrays.asList('X', 'Y', 'A', 'B', 'C', 'D'), Arrays.asList(nodes));
+        assertEquals(Arrays.asList('A', 'C', 'D'), ahrsz.sortByOrder(Arrays.asList('D', 'C', 'A')));
+    }
+
+    @Test
+    public void testPartitionByOrder() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Character> ahrsz = new AhrszAlgorithm<Character>(new HashMapGraph<Character>());
+        ahrsz.addEdge('A', 'B', 0.2f);
+        ahrsz.addEdge('B', 'C', 0.2f);
+        ahrsz.addEdge('C', 'D', 0.2f);
+        Character[] nodes = { 'D', 'B', 'C', 'A', 'X' };
+        assertEquals(3, ahrsz.partitionByOrder(nodes, 'C'));
+        assertEquals(Arrays.asList('B', 'A', 'X', 'D', 'C'), Arrays.asList(nodes));
+    }
+
+    @Test
+    public void testRandomSort() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new MinWeightHashMapGraph<Integer>(0.3f));
+        Random random = new Random(29);
+        for (int i = 0; i < 20000; i++) {
+            ahrsz.addEdge(random.nextInt(5000), random.nextInt(5000), random.nextFloat());
+        }
+        Integer[] nodes = new Integer[IndexSorter.PARALLEL_THRESHOLD * 2];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = random.nextInt(6000);
+        }
+        List<Integer> expected = new ArrayList<>(Arrays.asList(nodes));
+        expected.sort(new IndexComparator<Integer>(ahrsz.node2Index));
+        Integer[] sorted = nodes.clone();
+        ahrsz.sortByOrder(sorted);
+        assertEquals(expected, Arrays.asList(sorted));
+        ahrsz.parallelSortByOrder(nodes);
+        assertEquals(expected, Arrays.asList(nodes));
+    }
+
+}
@@ -4,10 +4,12 @@ import org.junit.Test;
 
 import java.lang.Character;import java.lang.Integer;
 import java.util.Arrays;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 
 import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
 
 public class AhrszTest {
 
@@ -111,6 +113,53 @@ public class AhrszTest {
         assertTrue(ahrsz.node2Index.get(10) == 4);
     }
 
-}
+    @Test
+    public void testIncrementalCheck() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        Random random = new Random(5);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>());
+        ahrsz.checkEvery(1);
+        for (int i = 0; i < 2000; i++) {
+            ahrsz.addEdge(random.nextInt(100), random.nextInt(100), random.nextFloat());
+        }
+        AhrszChecker.checkAhrsz(ahrsz);
+        AhrszChecker.checkAhrszParallel(ahrsz);
+    }
 
+    @Test
+    public void testIncrementalCheckDetectsCorruption() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>());
+        ahrsz.checkEvery(1);
+        ahrsz.addEdge(1, 2, 1f);
+        ahrsz.addEdge(3, 4, 1f);
+        // corrupt the order of the edge 1->2.
+        ahrsz.node2Index.put(1, 10);
+        try {
+            ahrsz.addEdge(1, 4, 1f);
+            fail();
+        } catch (InvalidAhrszStateException e) {
+            // expected
+        }
+        try {
+            AhrszChecker.checkAhrszParallel(ahrsz);
+            fail();
+        } catch (InvalidAhrszStateException e) {
+            // expected
+        }
+    }
 
+    @Test
+    @SuppressWarnings(value = "deprecation")
+    public void testFormerExpansionState() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>());
+        ExpansionState<Integer> former = new ExpansionState<>(2, 1);
+        ahrsz.setScratch(() -> former);
+        ahrsz.addEdge(1, 2, 0.1f);
+        ahrsz.addEdge(3, 4, 0.1f);
+        // reordering resets the state with the current indices first.
+        ahrsz.addEdge(4, 1, 0.1f);
+        assertTrue(ahrsz.before(4, 1));
+        assertTrue(ahrsz.before(3, 4));
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+}
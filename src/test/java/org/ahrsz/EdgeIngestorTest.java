@@ -0,0 +1,117 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class EdgeIngestorTest {
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        HashMapGraph<Integer> graph = new HashMapGraph<>();
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        EdgeIngestor<Integer> ingestor = new EdgeIngestor<>(ahrsz, 256);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    int from = i % 10;
+                    ingestor.offer(from, from + 1 + i % 3, 0.5f);
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        ingestor.close();
+        float total = 0f;
+        for (Integer from : graph.forward.keySet()) {
+            for (float weight : graph.forward.get(from).values()) {
+                total += weight;
+            }
+        }
+        assertEquals(4 * 10000 * 0.5f, total, 0.01f);
+        assertTrue(ingestor.coalescedEdges() > 0);
+        AhrszChecker.checkAhrsz(ahrsz);
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>());
+        EdgeIngestor<Integer> dropping = new EdgeIngestor<>(
+                ahrsz, 8, 2, EdgeIngestor.Backpressure.DROP, 16, 1, TimeUnit.MILLISECONDS);
+        EdgeIngestor<Integer> failing = new EdgeIngestor<>(
+                ahrsz, 8, 2, EdgeIngestor.Backpressure.FAIL, 16, 1, TimeUnit.MILLISECONDS);
+        // hold the monitor of the algorithm, so that the writers cannot apply anything.
+        synchronized (ahrsz) {
+            for (int i = 0; i < 100; i++) {
+                dropping.offer(1, 2, 1f);
+            }
+            assertTrue(dropping.droppedEdges() > 0);
+            try {
+                for (int i = 0; i < 100; i++) {
+                    failing.offer(1, 2, 1f);
+                }
+                fail();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        dropping.flush();
+        dropping.close();
+        failing.close();
+        assertTrue(ahrsz.before(1, 2));
+    }
+
+    @Test
+    public void testInvalidArguments() throws Exception {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>());
+        int[][] invalid = {{0, 16, 1}, {8, 0, 1}, {8, 16, 0}};
+        for (int[] arguments : invalid) {
+            try {
+                new EdgeIngestor<>(ahrsz, arguments[0], 1, EdgeIngestor.Backpressure.BLOCK,
+                        arguments[1], arguments[2], TimeUnit.MILLISECONDS);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        EdgeIngestor<Integer> ingestor = new EdgeIngestor<>(ahrsz, 16);
+        try {
+            ingestor.offer(1, null, 1f);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        ingestor.offer(1, 2, 1f);
+        ingestor.flush();
+        assertTrue(ahrsz.before(1, 2));
+        ingestor.close();
+    }
+
+    @Test
+    public void testIdleWriterParks() throws Exception {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(new HashMapGraph<Integer>());
+        EdgeIngestor<Integer> ingestor = new EdgeIngestor<>(ahrsz, 16);
+        ingestor.offer(1, 2, 1f);
+        ingestor.flush();
+        Thread.sleep(50);
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            // an idle writer waits without a timeout until a producer wakes it up.
+            if (thread.getName().equals("ahrsz-ingestor")) assertEquals(Thread.State.WAITING, thread.getState());
+        }
+        ingestor.offer(2, 3, 1f);
+        ingestor.flush();
+        assertTrue(ahrsz.before(1, 3));
+        ingestor.close();
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.ahrsz;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * Guards the insert path against regressions in allocation and latency.
+ *
+ * Fixed seeded acyclic workloads are inserted into a fresh algorithm, after a warmup run on another one. The bytes allocated
+ * per insert are taken from the allocation counter of the current thread, the latency of every insert is recorded
+ * in a LatencyHistogram. The results are compared with the baseline in insert-baseline.properties: allocation may
+ * exceed it by ALLOCATION_TOLERANCE. Wall clock latencies depend too much on the machine and its load to be checked
+ * on every build, so the p50 and p99 latencies are only compared, with LATENCY_TOLERANCE, when the tests run with
+ * -Dahrsz.checkLatency=true, e.g. on a quiet machine before a release.
+ *
+ * After an intended change, run the tests with -Dahrsz.updateBaseline=true to rewrite the baseline in src/test/resources.
+ */
+
+public class InsertRegressionTest {
+
+    private static final String BASELINE = "insert-baseline.properties";
+    private static final double ALLOCATION_TOLERANCE = 1.25;
+    private static final double LATENCY_TOLERANCE = 5.0;
+
+    private static final int NODES = 1000;
+    private static final int EDGES = 5000;
+
+    private static Properties baseline;
+
+    @BeforeClass
+    public static void loadBaseline() throws IOException {
+        baseline = new Properties();
+        try (InputStream in = InsertRegressionTest.class.getClassLoader().getResourceAsStream(BASELINE)) {
+            if (in != null) baseline.load(in);
+        }
+    }
+
+    @Test
+    public void testHashMapGraph() throws Exception {
+        check("hashmap", HashMapGraph::new);
+    }
+
+    @Test
+    public void testMinWeightHashMapGraph() throws Exception {
+        check("minweight", () -> new MinWeightHashMapGraph<Integer>(0.5f));
+    }
+
+    private void check(String workload, Supplier<DirectedGraph<Integer>> graphs) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Integer[] sources = new Integer[EDGES];
+        Integer[] sinks = new Integer[EDGES];
+        float[] weights = new float[EDGES];
+        Random random = new Random(23);
+        // the edges follow a hidden random order of the nodes, so the graph stays acyclic but inserts in
+        // arbitrary order still cause reorderings. Cycles would let the cost of an insert depend on which cycle
+        // happens to be removed first.
+        List<Integer> hidden = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) hidden.add(i);
+        Collections.shuffle(hidden, random);
+        for (int i = 0; i < EDGES; i++) {
+            int a = random.nextInt(NODES);
+            int b = random.nextInt(NODES);
+            // the nodes were boxed up front in hidden, so that boxing is not counted as allocation of the insert path.
+            sources[i] = hidden.get(Math.min(a, b));
+            sinks[i] = hidden.get(Math.max(a, b));
+            weights[i] = random.nextFloat();
+        }
+        run(graphs.get(), sources, sinks, weights, new LatencyHistogram());
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        run(graphs.get(), sources, sinks, weights, histogram);
+        long bytesPerInsert = (threads.getThreadAllocatedBytes(thread) - before) / EDGES;
+        long p50 = histogram.valueAt(50);
+        long p99 = histogram.valueAt(99);
+
+        if (Boolean.getBoolean("ahrsz.updateBaseline")) {
+            updateBaseline(workload, bytesPerInsert, p50, p99);
+            return;
+        }
+        assertWithin(workload + ".bytesPerInsert", bytesPerInsert, ALLOCATION_TOLERANCE);
+        if (Boolean.getBoolean("ahrsz.checkLatency")) {
+            assertWithin(workload + ".p50Nanos", p50, LATENCY_TOLERANCE);
+            assertWithin(workload + ".p99Nanos", p99, LATENCY_TOLERANCE);
+        }
+    }
+
+    private void run(DirectedGraph<Integer> graph, Integer[] sources, Integer[] sinks, float[] weights,
+                     LatencyHistogram histogram) throws InvalidExpansionStateException, InvalidAhrszStateException {
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        for (int i = 0; i < sources.length; i++) {
+            long start = System.nanoTime();
+            ahrsz.addEdge(sources[i], sinks[i], weights[i]);
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    private static void assertWithin(String key, long value, double tolerance) {
+        String stored = baseline.getProperty(key);
+        assertNotNull("No baseline for " + key + ", run with -Dahrsz.updateBaseline=true.", stored);
+        long limit = (long) (Long.parseLong(stored) * tolerance);
+        assertTrue(key + " regressed: " + value + " exceeds " + limit + " (baseline " + stored + ")", value <= limit);
+    }
+
+    private static synchronized void updateBaseline(String workload, long bytesPerInsert, long p50, long p99) throws IOException {
+        baseline.setProperty(workload + ".bytesPerInsert", Long.toString(bytesPerInsert));
+        baseline.setProperty(workload + ".p50Nanos", Long.toString(p50));
+        baseline.setProperty(workload + ".p99Nanos", Long.toString(p99));
+        try (OutputStream out = new FileOutputStream("src/test/resources/" + BASELINE)) {
+            baseline.store(out, "Baseline of InsertRegressionTest");
+        }
+    }
+
+}
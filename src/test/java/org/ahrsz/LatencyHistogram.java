@@ -0,0 +1,60 @@
+package org.ahrsz;
+
+/**
+ * A histogram of latencies in nanoseconds with a relative precision of about 1.5%, in the style of HdrHistogram.
+ *
+ * Every power of two is split into 64 linear sub-buckets, so recording a value is a few bit operations and
+ * an array increment, without allocating.
+ */
+
+class LatencyHistogram {
+
+    private static final int SUB_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+    private long total;
+
+    void record(long value) {
+        counts[index(Math.max(0, value))]++;
+        total++;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        // value >>> exponent lies in [SUB_BUCKETS, 2 * SUB_BUCKETS).
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return exponent * SUB_BUCKETS + (int) (value >>> exponent);
+    }
+
+    /**
+     * @return the highest value that the bucket with the given index can hold.
+     */
+
+    private static long highest(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << exponent) - 1;
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return a value that is at least as high as the given percentile of the recorded values.
+     */
+
+    long valueAt(double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return highest(i);
+        }
+        return 0;
+    }
+
+    long count() {
+        return total;
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class OrderExporterTest {
+
+    @Test
+    public void testCsv() throws InvalidExpansionStateException, InvalidAhrszStateException, IOException {
+        AhrszAlgorithm<String> ahrsz = new AhrszAlgorithm<String>(new MinWeightHashMapGraph<String>(0.5f));
+        ahrsz.addEdge("b", "a,\"c\"", 1f);
+        ahrsz.addEdge("a,\"c\"", "d", 0.25f);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // a tiny buffer forces many writes to the channel.
+        long edges = new OrderExporter<String>(8).export(ahrsz, Channels.newChannel(out));
+        assertEquals(1, edges);
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("index,node,successor,weight", lines[0]);
+        assertEquals(ahrsz.node2Index.get("b") + ",b,\"a,\"\"c\"\"\",1.0", lines[1]);
+        assertEquals(ahrsz.node2Index.get("a,\"c\"") + ",\"a,\"\"c\"\"\",,", lines[2]);
+        assertEquals(ahrsz.node2Index.get("d") + ",d,,", lines[3]);
+    }
+
+    @Test
+    public void testBinary() throws InvalidExpansionStateException, InvalidAhrszStateException, IOException {
+        Random random = new Random(7);
+        FixedPointGraph<Integer> graph = new FixedPointGraph<>();
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        for (int i = 0; i < 2000; i++) {
+            ahrsz.addEdge(random.nextInt(200), random.nextInt(200), random.nextFloat());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = new OrderExporter<Integer>(NodeCodec.integers(), 64).export(ahrsz, Channels.newChannel(out));
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+        int nodes = VarInts.getUnsigned(in);
+        assertEquals(ahrsz.node2Index.size(), nodes);
+        int previous = Integer.MIN_VALUE;
+        long edges = 0;
+        for (int i = 0; i < nodes; i++) {
+            int node = in.getInt();
+            int index = VarInts.getSigned(in);
+            assertEquals(ahrsz.node2Index.get(node).intValue(), index);
+            assertTrue(index > previous);
+            previous = index;
+            int count = VarInts.getUnsigned(in);
+            assertEquals(graph.getF(node).size(), count);
+            for (int e = 0; e < count; e++) {
+                int successor = in.getInt();
+                assertEquals(graph.getF(node).get(successor), in.getFloat(), 0f);
+                assertTrue(ahrsz.before(node, successor));
+                edges++;
+            }
+        }
+        assertEquals(exported, edges);
+        assertTrue(! in.hasRemaining());
+    }
+
+    /**
+     * Edges of a decaying graph expire while the export reads them, but every count must match its edges.
+     */
+
+    @Test
+    public void testBinaryOnDecayingGraph() throws InvalidExpansionStateException, InvalidAhrszStateException,
+            IOException {
+        AtomicLong clock = new AtomicLong();
+        AtomicLong window = new AtomicLong(Long.MAX_VALUE);
+        DecayingHashMapGraph<Integer> graph = new DecayingHashMapGraph<>(
+                (weight, elapsed) -> elapsed < window.get() ? weight : 0f, 0f, clock::incrementAndGet);
+        AhrszAlgorithm<Integer> ahrsz = new AhrszAlgorithm<Integer>(graph);
+        for (int i = 0; i < 300; i++) {
+            ahrsz.addEdge(i % 20, 20 + i % 37, 1f);
+        }
+        // every read advances the clock, so the older half of the edges expires one by one during the export.
+        window.set(clock.get() / 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = new OrderExporter<Integer>(NodeCodec.integers(), 64).export(ahrsz, Channels.newChannel(out));
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+        int nodes = VarInts.getUnsigned(in);
+        long edges = 0;
+        for (int i = 0; i < nodes; i++) {
+            in.getInt();
+            VarInts.getSigned(in);
+            int count = VarInts.getUnsigned(in);
+            for (int e = 0; e < count; e++) {
+                in.getInt();
+                assertEquals(1f, in.getFloat(), 0f);
+            }
+            edges += count;
+        }
+        assertEquals(exported, edges);
+        assertEquals(0, in.remaining());
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.ahrsz;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class ThresholdGraphTest {
+
+    @Test
+    public void testViews() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        ThresholdGraph<Character> graph = new ThresholdGraph<>();
+        AhrszAlgorithm<Character> low = graph.addView(0.5f).ahrsz;
+        AhrszAlgorithm<Character> high = graph.addView(1.0f).ahrsz;
+        graph.addEdge('A', 'B', 0.8f);
+        graph.addEdge('B', 'C', 0.8f);
+        graph.addEdge('C', 'A', 0.6f);
+        // the cycle is removed in the low view only, the high view does not know any node yet.
+        assertFalse(low.directedGraph.hasEdge('C', 'A'));
+        assertFalse(low.directedGraph.hasEdge('A', 'B'));
+        assertNull(high.node2Index.get('A'));
+        graph.addEdge('C', 'A', 0.6f);
+        graph.addEdge('A', 'B', 0.4f);
+        assertTrue(high.before('C', 'A'));
+        assertTrue(high.before('A', 'B'));
+        assertTrue(low.directedGraph.hasEdge('C', 'A'));
+        // B->C becomes visible in both views and closes the cycle in both.
+        graph.addEdge('B', 'C', 0.4f);
+        assertFalse(high.directedGraph.hasEdge('A', 'B') && high.directedGraph.hasEdge('B', 'C')
+                && high.directedGraph.hasEdge('C', 'A'));
+        AhrszChecker.checkAhrsz(low);
+        AhrszChecker.checkAhrsz(high);
+    }
+
+    @Test
+    public void testOrder() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        ThresholdGraph<Character> graph = new ThresholdGraph<>();
+        ThresholdGraph.Order<Character> order = graph.addView(0.5f);
+        graph.addEdge('C', 'B', 1f);
+        graph.addEdge('B', 'A', 1f);
+        graph.addEdge('A', 'D', 0.2f);
+        assertEquals(0.5f, order.minWeight());
+        assertTrue(order.before('C', 'A'));
+        assertTrue(order.reachable('C', 'A'));
+        assertFalse(order.reachable('A', 'C'));
+        assertNull(order.index('D'));
+        OrderSnapshot<Character> snapshot = order.snapshot();
+        graph.removeNode('B');
+        assertNull(order.index('B'));
+        assertFalse(order.reachable('C', 'A'));
+        assertEquals(3, snapshot.size());
+    }
+
+    @Test
+    public void testRandomViews() throws InvalidExpansionStateException, InvalidAhrszStateException {
+        ThresholdGraph<Integer> graph = new ThresholdGraph<>();
+        graph.addView(0.2f);
+        Random random = new Random(37);
+        for (int i = 0; i < 5000; i++) {
+            graph.addEdge(random.nextInt(100), random.nextInt(100), random.nextFloat());
+            if (i == 2000) {
+                graph.addView(1.0f);
+                graph.addView(3.0f);
+            }
+            if (i % 200 == 0) graph.removeNode(random.nextInt(100));
+        }
+        for (int v = 0; v < graph.views(); v++) {
+            AhrszChecker.checkAhrsz(graph.view(v).ahrsz);
+        }
+    }
+
+}